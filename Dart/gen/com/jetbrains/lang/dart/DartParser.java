@@ -1163,7 +1163,7 @@ public class DartParser implements PsiParser, LightPsiParser {
   }
 
   /* ********************************************************** */
-  // '{' classMembers '}'
+  // '{' (<<lazyClassMembers>> | classMembers) '}'
   public static boolean classBody(PsiBuilder b, int l) {
     if (!recursion_guard_(b, l, "classBody")) return false;
     if (!nextTokenIs(b, LBRACE)) return false;
@@ -1171,12 +1171,23 @@ public class DartParser implements PsiParser, LightPsiParser {
     Marker m = enter_section_(b, l, _NONE_, CLASS_BODY, null);
     r = consumeToken(b, LBRACE);
     p = r; // pin = 1
-    r = r && report_error_(b, classMembers(b, l + 1));
+    r = r && report_error_(b, classBody_1(b, l + 1));
     r = p && consumeToken(b, RBRACE) && r;
     exit_section_(b, l, m, r, p, null);
     return r || p;
   }
 
+  // <<lazyClassMembers>> | classMembers
+  private static boolean classBody_1(PsiBuilder b, int l) {
+    if (!recursion_guard_(b, l, "classBody_1")) return false;
+    boolean r;
+    Marker m = enter_section_(b);
+    r = lazyClassMembers(b, l + 1);
+    if (!r) r = classMembers(b, l + 1);
+    exit_section_(b, m, null, r);
+    return r;
+  }
+
   /* ********************************************************** */
   // metadata* 'abstract'? 'class' componentName typeParameters? (mixinApplication | standardClassDeclarationTail)
   public static boolean classDefinition(PsiBuilder b, int l) {
@@ -27,7 +27,7 @@ public interface DartTokenTypes {
   IElementType CATCH_PART = new DartElementType("CATCH_PART");
   IElementType CLASS_BODY = new DartElementType("CLASS_BODY");
   IElementType CLASS_DEFINITION = new DartElementType("CLASS_DEFINITION");
-  IElementType CLASS_MEMBERS = new DartElementType("CLASS_MEMBERS");
+  IElementType CLASS_MEMBERS = new DartClassMembersElementType("CLASS_MEMBERS");
   IElementType COMPARE_EXPRESSION = new DartElementType("COMPARE_EXPRESSION");
   IElementType COMPONENT_NAME = new DartElementType("COMPONENT_NAME");
   IElementType CONTINUE_STATEMENT = new DartElementType("CONTINUE_STATEMENT");
@@ -0,0 +1,66 @@
+package com.jetbrains.lang.dart;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.Language;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IReparseableElementType;
+import com.jetbrains.lang.dart.lexer.DartLexer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Element type of class members, i.e. everything between the braces of a class body. Class members are parsed lazily, when
+ * PSI of the class body is first accessed, and edits inside a class body outside of function bodies reparse this class body only,
+ * not the whole file. See {@link DartGeneratedParserUtilBase#lazyClassMembers}.
+ * <p/>
+ * Node built by the lazy parser starts and ends with a non-whitespace non-comment token, like the one built by an eager parser,
+ * so that the tree doesn't depend on the way it has been built. Reparse of text that doesn't satisfy this falls back to the parent.
+ */
+public class DartClassMembersElementType extends IReparseableElementType {
+  public DartClassMembersElementType(@NotNull final String debugName) {
+    super(debugName, DartLanguage.INSTANCE);
+  }
+
+  @Override
+  public boolean isParsable(@NotNull final CharSequence buffer, @NotNull final Language fileLanguage, @NotNull final Project project) {
+    final Lexer lexer = new DartLexer();
+    lexer.start(buffer);
+    if (isWhiteSpaceOrComment(lexer.getTokenType())) return false;
+
+    IElementType lastTokenType = null;
+    int balance = 0;
+    IElementType tokenType;
+    while ((tokenType = lexer.getTokenType()) != null) {
+      if (tokenType == DartTokenTypes.LBRACE) {
+        balance++;
+      }
+      else if (tokenType == DartTokenTypes.RBRACE) {
+        if (balance == 0) return false;
+        balance--;
+      }
+      lastTokenType = tokenType;
+      lexer.advance();
+    }
+
+    return balance == 0 && !isWhiteSpaceOrComment(lastTokenType);
+  }
+
+  private static boolean isWhiteSpaceOrComment(@Nullable final IElementType tokenType) {
+    return tokenType == null || tokenType == DartTokenTypesSets.WHITE_SPACE || DartTokenTypesSets.COMMENTS.contains(tokenType);
+  }
+
+  @Override
+  public ASTNode parseContents(@NotNull final ASTNode chameleon) {
+    final PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(chameleon.getTreeParent().getPsi().getProject(),
+                                                                             chameleon,
+                                                                             new DartLexer(),
+                                                                             getLanguage(),
+                                                                             chameleon.getChars());
+    new DartParser().parseLight(this, builder);
+    return builder.getTreeBuilt().getFirstChildNode();
+  }
+}
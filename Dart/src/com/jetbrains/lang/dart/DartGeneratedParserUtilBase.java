@@ -122,6 +122,35 @@ public class DartGeneratedParserUtilBase extends GeneratedParserUtilBase {
     return PsiBuilderUtil.parseBlockLazy(builder, LBRACE, RBRACE, LAZY_PARSEABLE_BLOCK) != null;
   }
 
+  /**
+   * Called right after '{' of a class body. Collapses everything up to the matching '}' into a lazy-parseable
+   * {@link DartTokenTypes#CLASS_MEMBERS} node. Returns {@code false} without consuming anything if the body is empty
+   * or has no matching '}', such bodies are parsed eagerly by the caller to keep the usual error recovery.
+   */
+  public static boolean lazyClassMembers(PsiBuilder builder, int level) {
+    if (builder.getTokenType() == RBRACE) return false;
+
+    final PsiBuilder.Marker marker = builder.mark();
+    int braceCount = 0;
+    while (!builder.eof()) {
+      final IElementType tokenType = builder.getTokenType();
+      if (tokenType == RBRACE) {
+        if (braceCount == 0) {
+          marker.collapse(CLASS_MEMBERS);
+          return true;
+        }
+        braceCount--;
+      }
+      else if (tokenType == LBRACE) {
+        braceCount++;
+      }
+      builder.advanceLexer();
+    }
+
+    marker.rollbackTo();
+    return false;
+  }
+
   public static boolean arrowBodyWrapper(PsiBuilder builder_, int level_) {
     final Boolean wasSyncOrAsync = builder_.getUserData(INSIDE_SYNC_OR_ASYNC_FUNCTION);
     final boolean syncOrAsync = nextTokenIs(builder_, "", ASYNC, SYNC);
@@ -7,6 +7,7 @@ import com.google.dart.server.*;
 import com.google.dart.server.generated.AnalysisServer;
 import com.google.dart.server.internal.remote.DebugPrintStream;
 import com.google.dart.server.internal.remote.RemoteAnalysisServerImpl;
+import com.google.dart.server.internal.remote.ResponseDispatcher;
 import com.google.dart.server.internal.remote.StdioServerSocket;
 import com.google.dart.server.utilities.logging.Logging;
 import com.intellij.codeInsight.intention.IntentionManager;
@@ -86,6 +87,7 @@ public class DartAnalysisServerService implements Disposable {
   public static final String MIN_SDK_VERSION = "1.12";
 
   private static final long UPDATE_FILES_TIMEOUT = 300;
+  private static final String INCREMENTAL_OVERLAYS_REGISTRY_KEY = "dart.server.incremental.overlays";
 
   private static final long CHECK_CANCELLED_PERIOD = 10;
   private static final long SEND_REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
@@ -131,8 +133,11 @@ public class DartAnalysisServerService implements Disposable {
 
   private final DartServerRootsHandler myRootsHandler;
   private final Map<String, Long> myFilePathWithOverlaidContentToTimestamp = new THashMap<>();
-  private final List<String> myVisibleFiles = new ArrayList<>();
+  // modified under myLock, read without it by isFileVisible(), which is called in the server response thread
+  private final List<String> myVisibleFiles = ContainerUtil.createLockFreeCopyOnWriteList();
   private final Set<Document> myChangedDocuments = new THashSet<>();
+  private final DartOverlayEditsTracker myOverlayEditsTracker = new DartOverlayEditsTracker();
+  private final DartServerResultsCache myResultsCache = new DartServerResultsCache();
   private final Alarm myUpdateFilesAlarm;
 
   @NotNull private final Queue<CompletionInfo> myCompletionInfos = new LinkedList<>();
@@ -149,11 +154,10 @@ public class DartAnalysisServerService implements Disposable {
   private boolean myHaveShownInitialProgress;
   private boolean mySentAnalysisBusy;
 
-  // files with red squiggles in Project View. This field is also used as a lock to access these 3 collections
-  @NotNull private final Set<String> myFilePathsWithErrors = new THashSet<>();
-  // how many files with errors are in this folder (recursively)
-  @NotNull private final TObjectIntHashMap<String> myFolderPathsWithErrors = new TObjectIntHashMap<>();
-  // errors hash is tracked to optimize error notification listener: do not handle equal notifications more than once
+  // files with red squiggles in Project View
+  @NotNull private final DartFilesWithErrors myFilesWithErrors = new DartFilesWithErrors();
+  // errors hash is tracked to optimize error notification listener: do not handle equal notifications more than once.
+  // This field is also used as a lock to access it.
   @NotNull private final TObjectIntHashMap<String> myFilePathToErrorsHash = new TObjectIntHashMap<>();
 
   public long maxMillisToWaitForServerResponse = 0L;
@@ -205,16 +209,20 @@ public class DartAnalysisServerService implements Disposable {
       final String filePathSI = FileUtil.toSystemIndependentName(filePathSD);
 
       final int oldHash;
-      synchronized (myFilePathsWithErrors) {
+      synchronized (myFilePathToErrorsHash) {
         // TObjectIntHashMap returns 0 if there's no such entry, it's equivalent to empty error set for this file
         oldHash = myFilePathToErrorsHash.get(filePathSI);
       }
 
       final int newHash = errorsWithoutTodo.isEmpty() ? 0 : ensureNotZero(errorsWithoutTodo.hashCode());
+      // new analysis results may change fixes and assists even if errors are the same
+      myResultsCache.invalidate(filePathSI);
+
       // do nothing if errors are the same as were already handled previously
       if (oldHash == newHash && !myServerData.isErrorInfoLost(filePathSI)) return;
 
       final boolean visible = myVisibleFiles.contains(filePathSD);
+
       if (myServerData.computedErrors(filePathSI, errorsWithoutTodo, visible)) {
         onErrorsUpdated(filePathSI, errorsWithoutTodo, hasSevereProblems, newHash);
       }
@@ -261,6 +269,10 @@ public class DartAnalysisServerService implements Disposable {
 
       myServerData.onFlushedResults(filePaths);
 
+      for (String filePath : filePaths) {
+        myResultsCache.invalidate(filePath);
+      }
+
       for (String filePath : filePaths) {
         onErrorsUpdated(filePath, AnalysisError.EMPTY_LIST, false, 0);
       }
@@ -306,6 +318,14 @@ public class DartAnalysisServerService implements Disposable {
       myErrorReporter.report(errorMessage);
     }
 
+    @Override
+    public void requestError(@NotNull final RequestError requestError) {
+      if (RequestErrorCode.INVALID_OVERLAY_CHANGE.equals(requestError.getCode())) {
+        LOG.info("Server failed to apply overlay change, resending full content: " + requestError.getMessage());
+        resendFullOverlays();
+      }
+    }
+
     @Override
     public void serverStatus(@Nullable final AnalysisStatus analysisStatus, @Nullable final PubStatus pubStatus) {
       final boolean wasBusy = myAnalysisInProgress || myPubListInProgress;
@@ -405,18 +425,19 @@ public class DartAnalysisServerService implements Disposable {
   }
 
   public int[] getConvertedOffsets(@NotNull final VirtualFile file, final int[] _offsets) {
-    final int[] offsets = new int[_offsets.length];
-    for (int i = 0; i < _offsets.length; i++) {
-      offsets[i] = getConvertedOffset(file, _offsets[i]);
-    }
-    return offsets;
+    if (myFilePathWithOverlaidContentToTimestamp.containsKey(file.getPath())) return _offsets.clone();
+    return FileOffsetsManager.getInstance().getConvertedOffsets(file, _offsets);
   }
 
   public int[] getConvertedLengths(@NotNull final VirtualFile file, final int[] _offsets, final int[] _lengths) {
     final int[] offsets = getConvertedOffsets(file, _offsets);
-    final int[] lengths = new int[_lengths.length];
+    final int[] ends = new int[_lengths.length];
     for (int i = 0; i < _lengths.length; i++) {
-      lengths[i] = getConvertedOffset(file, _offsets[i] + _lengths[i]) - offsets[i];
+      ends[i] = _offsets[i] + _lengths[i];
+    }
+    final int[] lengths = getConvertedOffsets(file, ends);
+    for (int i = 0; i < lengths.length; i++) {
+      lengths[i] -= offsets[i];
     }
     return lengths;
   }
@@ -425,30 +446,64 @@ public class DartAnalysisServerService implements Disposable {
     return StringUtil.compareVersionNumbers(sdk.getVersion(), MIN_SDK_VERSION) >= 0;
   }
 
+  /**
+   * Passes suggestions to the {@code consumer} batch by batch as they arrive from the server, until the last batch is received.
+   * A suggestion that is equal in every field to one passed with an earlier batch is not passed again; suggestions that differ only
+   * in library, parameters or documentation are all passed.
+   */
   public void addCompletions(@NotNull final VirtualFile file,
                              @NotNull final String completionId,
                              @NotNull final CompletionSuggestionConsumer consumer) {
+    final long startTime = System.currentTimeMillis();
+    long firstSuggestionTime = -1;
+    int suggestionCount = 0;
+    final Set<CompletionSuggestion> consumedSuggestions = new THashSet<>();
+
     while (true) {
       ProgressManager.checkCanceled();
 
+      final List<CompletionInfo> completionInfos = new SmartList<>();
       synchronized (myCompletionInfos) {
         CompletionInfo completionInfo;
         while ((completionInfo = myCompletionInfos.poll()) != null) {
-          if (!completionInfo.myCompletionId.equals(completionId)) continue;
-          if (!completionInfo.isLast) continue;
+          if (completionInfo.myCompletionId.equals(completionId)) {
+            completionInfos.add(completionInfo);
+          }
+        }
 
-          for (final CompletionSuggestion completion : completionInfo.myCompletions) {
-            final int convertedReplacementOffset = getConvertedOffset(file, completionInfo.myOriginalReplacementOffset);
-            final int convertedReplacementLength = getConvertedOffset(file, completionInfo.myOriginalReplacementLength);
-            consumer.consumeCompletionSuggestion(convertedReplacementOffset, convertedReplacementLength, completion);
+        if (completionInfos.isEmpty()) {
+          try {
+            myCompletionInfos.wait(CHECK_CANCELLED_PERIOD);
           }
-          return;
+          catch (InterruptedException e) {
+            return;
+          }
+          continue;
         }
+      }
 
-        try {
-          myCompletionInfos.wait(CHECK_CANCELLED_PERIOD);
+      // the consumer is called outside of the lock, so that the server thread can add next batches meanwhile
+      for (CompletionInfo completionInfo : completionInfos) {
+        final int convertedReplacementOffset = getConvertedOffset(file, completionInfo.myOriginalReplacementOffset);
+        final int convertedReplacementLength = getConvertedOffset(file, completionInfo.myOriginalReplacementLength);
+
+        for (final CompletionSuggestion completion : completionInfo.myCompletions) {
+          ProgressManager.checkCanceled();
+          if (!consumedSuggestions.add(completion)) continue;
+
+          if (firstSuggestionTime < 0) {
+            firstSuggestionTime = System.currentTimeMillis();
+          }
+          suggestionCount++;
+          consumer.consumeCompletionSuggestion(convertedReplacementOffset, convertedReplacementLength, completion);
         }
-        catch (InterruptedException e) {
+
+        if (completionInfo.isLast) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Completion " + completionId + ": " + suggestionCount + " suggestions, first in " +
+                      (firstSuggestionTime < 0 ? "-" : String.valueOf(firstSuggestionTime - startTime)) + " ms, all in " +
+                      (System.currentTimeMillis() - startTime) + " ms");
+          }
           return;
         }
       }
@@ -630,6 +685,10 @@ public class DartAnalysisServerService implements Disposable {
 
         final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
         if (isLocalAnalyzableFile(file)) {
+          synchronized (myLock) {
+            myOverlayEditsTracker.beforeDocumentChange(file.getPath(), e);
+          }
+
           for (VirtualFile fileInEditor : FileEditorManager.getInstance(myProject).getOpenFiles()) {
             if (fileInEditor.equals(file)) {
               synchronized (myLock) {
@@ -643,6 +702,18 @@ public class DartAnalysisServerService implements Disposable {
         myUpdateFilesAlarm.cancelAllRequests();
         myUpdateFilesAlarm.addRequest(DartAnalysisServerService.this::updateFilesContent, UPDATE_FILES_TIMEOUT);
       }
+
+      @Override
+      public void documentChanged(DocumentEvent e) {
+        if (myServer == null) return;
+
+        final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
+        if (isLocalAnalyzableFile(file)) {
+          synchronized (myLock) {
+            myOverlayEditsTracker.documentChanged(file.getPath(), e);
+          }
+        }
+      }
     };
 
     EditorFactory.getInstance().getEventMulticaster().addDocumentListener(documentListener, myProject);
@@ -764,8 +835,6 @@ public class DartAnalysisServerService implements Disposable {
   }
 
   private void doUpdateFilesContent() {
-    // may be use DocumentListener to collect deltas instead of sending the whole Document.getText() each time?
-
     AnalysisServer server = myServer;
     if (server == null) {
       return;
@@ -774,6 +843,7 @@ public class DartAnalysisServerService implements Disposable {
     myUpdateFilesAlarm.cancelAllRequests();
 
     final Map<String, Object> filesToUpdate = new THashMap<>();
+    final boolean incrementalOverlays = Registry.is(INCREMENTAL_OVERLAYS_REGISTRY_KEY, true);
     ApplicationManager.getApplication().assertReadAccessAllowed();
     synchronized (myLock) {
       final Set<String> oldTrackedFiles = new THashSet<>(myFilePathWithOverlaidContentToTimestamp.keySet());
@@ -793,7 +863,8 @@ public class DartAnalysisServerService implements Disposable {
 
           final Long oldTimestamp = myFilePathWithOverlaidContentToTimestamp.get(file.getPath());
           if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp) {
-            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+            final Object overlay = myOverlayEditsTracker.createOverlay(file.getPath(), document, incrementalOverlays);
+            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), overlay);
             myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), document.getModificationStamp());
           }
         }
@@ -803,6 +874,7 @@ public class DartAnalysisServerService implements Disposable {
       for (String oldPath : oldTrackedFiles) {
         final Long removed = myFilePathWithOverlaidContentToTimestamp.remove(oldPath);
         LOG.assertTrue(removed != null, oldPath);
+        myOverlayEditsTracker.overlayRemoved(oldPath);
         filesToUpdate.put(FileUtil.toSystemDependentName(oldPath), new RemoveContentOverlay());
       }
 
@@ -818,14 +890,89 @@ public class DartAnalysisServerService implements Disposable {
         if (!oldTrackedFiles.isEmpty()) {
           LOG.debug("Removing overlaid content: " + StringUtil.join(oldTrackedFiles, ",\n"));
         }
+
+        LOG.debug("Overlaid content sent: " + myOverlayEditsTracker.getBytesSentPerSecond() + " bytes/s, " +
+                  myOverlayEditsTracker.getTotalBytesSent() + " bytes total");
       }
     }
 
     if (!filesToUpdate.isEmpty()) {
+      myResultsCache.clear();
       server.analysis_updateContent(filesToUpdate, myServerData::onFilesContentUpdated);
     }
   }
 
+  private void resendFullOverlays() {
+    synchronized (myLock) {
+      myOverlayEditsTracker.reset();
+      // a stamp that never matches a document modification stamp, so that the whole content is sent for all overlaid files
+      for (Map.Entry<String, Long> entry : myFilePathWithOverlaidContentToTimestamp.entrySet()) {
+        entry.setValue(-1L);
+      }
+    }
+
+    myUpdateFilesAlarm.cancelAllRequests();
+    myUpdateFilesAlarm.addRequest(this::updateFilesContent, 0);
+  }
+
+  /**
+   * Returns the number of bytes of overlaid file content sent to the server during the last full second.
+   */
+  public long getOverlaidContentBytesPerSecond() {
+    synchronized (myLock) {
+      return myOverlayEditsTracker.getBytesSentPerSecond();
+    }
+  }
+
+  /**
+   * Hit counters of the cache of hover, navigation, assists and fixes results, for diagnostics.
+   */
+  @NotNull
+  public String getResultsCacheStatistics() {
+    return myResultsCache.getStatistics();
+  }
+
+  /**
+   * Counters of analysis results applied to editors in the EDT, superseded by newer ones or deferred, and of highlighting restarts,
+   * for diagnostics.
+   */
+  @NotNull
+  public String getEdtUpdatesStatistics() {
+    return myServerData.getEdtUpdatesStatistics();
+  }
+
+  /**
+   * The number of notifications waiting for processing and processing latency of each notification kind, for diagnostics.
+   */
+  @NotNull
+  public String getNotificationStatistics() {
+    final AnalysisServer server = myServer;
+    if (!(server instanceof RemoteAnalysisServerImpl)) return "";
+
+    final RemoteAnalysisServerImpl remoteServer = (RemoteAnalysisServerImpl)server;
+    final StringBuilder builder = new StringBuilder().append("queued notifications: ").append(remoteServer.getNotificationQueueDepth());
+    final Map<String, ResponseDispatcher.EventStatistics> statistics = new TreeMap<>(remoteServer.getNotificationStatistics());
+    for (Map.Entry<String, ResponseDispatcher.EventStatistics> entry : statistics.entrySet()) {
+      builder.append('\n').append(entry.getKey()).append(": ").append(entry.getValue());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns {@code true} if the file is shown in a selected editor, i.e. it is one of the priority files sent to the server.
+   * Can be called from any thread.
+   *
+   * @param filePath system-independent path, as kept by {@link DartServerData}; visible files are stored with system-dependent paths
+   */
+  boolean isFileVisible(@NotNull final String filePath) {
+    return myVisibleFiles.contains(FileUtil.toSystemDependentName(filePath));
+  }
+
+  private static long getDocumentStamp(@NotNull final VirtualFile file) {
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    return document != null ? document.getModificationStamp() : file.getModificationStamp();
+  }
+
   public boolean updateRoots(@NotNull final List<String> includedRoots, @NotNull final List<String> excludedRoots) {
     AnalysisServer server = myServer;
     if (server == null) {
@@ -850,7 +997,7 @@ public class DartAnalysisServerService implements Disposable {
   }
 
   private void updateFilesWithErrorsSet(@NotNull final String filePath, final boolean hasSevereProblems, final int errorsHash) {
-    synchronized (myFilePathsWithErrors) {
+    synchronized (myFilePathToErrorsHash) {
       if (errorsHash == 0) {
         // no errors
         myFilePathToErrorsHash.remove(filePath);
@@ -858,38 +1005,16 @@ public class DartAnalysisServerService implements Disposable {
       else {
         myFilePathToErrorsHash.put(filePath, errorsHash);
       }
-
-      if (hasSevereProblems) {
-        if (myFilePathsWithErrors.add(filePath)) {
-          String parentPath = PathUtil.getParentPath(filePath);
-          while (!parentPath.isEmpty()) {
-            final int count = myFolderPathsWithErrors.get(parentPath); // returns zero if there were no path in the map
-            myFolderPathsWithErrors.put(parentPath, count + 1);
-            parentPath = PathUtil.getParentPath(parentPath);
-          }
-        }
-      }
-      else {
-        if (myFilePathsWithErrors.remove(filePath)) {
-          String parentPath = PathUtil.getParentPath(filePath);
-          while (!parentPath.isEmpty()) {
-            final int count = myFolderPathsWithErrors.remove(parentPath); // returns zero if there was no path in the map
-            if (count > 1) {
-              myFolderPathsWithErrors.put(parentPath, count - 1);
-            }
-            parentPath = PathUtil.getParentPath(parentPath);
-          }
-        }
-      }
     }
+
+    myFilesWithErrors.update(filePath, hasSevereProblems);
   }
 
   private void clearAllErrors() {
-    synchronized (myFilePathsWithErrors) {
-      myFilePathsWithErrors.clear();
+    synchronized (myFilePathToErrorsHash) {
       myFilePathToErrorsHash.clear();
-      myFolderPathsWithErrors.clear();
     }
+    myFilesWithErrors.clear();
 
     if (!myProject.isDisposed() && myInitializationOnServerStartupDone) {
       DartProblemsView.getInstance(myProject).clearAll();
@@ -899,31 +1024,36 @@ public class DartAnalysisServerService implements Disposable {
   @NotNull
   public List<HoverInformation> analysis_getHover(@NotNull final VirtualFile file, final int _offset) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final List<HoverInformation> result = Lists.newArrayList();
 
     final AnalysisServer server = myServer;
     if (server == null) {
       return HoverInformation.EMPTY_LIST;
     }
 
-    final CountDownLatch latch = new CountDownLatch(1);
-    final int offset = getOriginalOffset(file, _offset);
-    server.analysis_getHover(filePath, offset, new GetHoverConsumer() {
-      @Override
-      public void computedHovers(HoverInformation[] hovers) {
-        Collections.addAll(result, hovers);
-        latch.countDown();
-      }
+    final Ref<Boolean> isNew = Ref.create();
+    final DartServerResultsCache.Entry entry =
+      myResultsCache.getOrCreate(DartServerResultsCache.Kind.HOVER, file.getPath(), _offset, 0, getDocumentStamp(file), isNew);
 
-      @Override
-      public void onError(RequestError error) {
-        logError("analysis_getHover()", filePath, error);
-        latch.countDown();
-      }
-    });
+    if (isNew.get()) {
+      final int offset = getOriginalOffset(file, _offset);
+      server.analysis_getHover(filePath, offset, new GetHoverConsumer() {
+        @Override
+        public void computedHovers(HoverInformation[] hovers) {
+          myResultsCache.completed(entry, Arrays.asList(hovers));
+        }
 
-    awaitForLatchCheckingCanceled(server, latch, GET_HOVER_TIMEOUT);
-    return result;
+        @Override
+        public void onError(RequestError error) {
+          logError("analysis_getHover()", filePath, error);
+          myResultsCache.failed(entry);
+        }
+      });
+    }
+
+    awaitForLatchCheckingCanceled(server, entry.getLatch(), GET_HOVER_TIMEOUT);
+
+    @SuppressWarnings("unchecked") final List<HoverInformation> result = (List<HoverInformation>)entry.getResult();
+    return result == null ? Lists.newArrayList() : new ArrayList<>(result);
   }
 
   @Nullable
@@ -931,82 +1061,92 @@ public class DartAnalysisServerService implements Disposable {
                                                                           final int _offset,
                                                                           final int length) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final Ref<List<DartServerData.DartNavigationRegion>> resultRef = Ref.create();
 
     final AnalysisServer server = myServer;
     if (server == null) {
       return null;
     }
 
-    final CountDownLatch latch = new CountDownLatch(1);
-    LOG.debug("analysis_getNavigation(" + filePath + ")");
+    final Ref<Boolean> isNew = Ref.create();
+    final DartServerResultsCache.Entry entry =
+      myResultsCache.getOrCreate(DartServerResultsCache.Kind.NAVIGATION, file.getPath(), _offset, length, getDocumentStamp(file), isNew);
 
-    final int offset = getOriginalOffset(file, _offset);
-    server.analysis_getNavigation(filePath, offset, length, new GetNavigationConsumer() {
-      @Override
-      public void computedNavigation(final List<NavigationRegion> regions) {
-        final List<DartServerData.DartNavigationRegion> dartRegions = new ArrayList<>(regions.size());
-        for (NavigationRegion region : regions) {
-          if (region.getLength() > 0) {
-            dartRegions.add(DartServerData.createDartNavigationRegion(DartAnalysisServerService.this, file, region));
+    if (isNew.get()) {
+      LOG.debug("analysis_getNavigation(" + filePath + ")");
+
+      final int offset = getOriginalOffset(file, _offset);
+      server.analysis_getNavigation(filePath, offset, length, new GetNavigationConsumer() {
+        @Override
+        public void computedNavigation(final List<NavigationRegion> regions) {
+          final List<DartServerData.DartNavigationRegion> dartRegions = new ArrayList<>(regions.size());
+          for (NavigationRegion region : regions) {
+            if (region.getLength() > 0) {
+              dartRegions.add(DartServerData.createDartNavigationRegion(DartAnalysisServerService.this, file, region));
+            }
           }
+
+          myResultsCache.completed(entry, dartRegions);
         }
 
-        resultRef.set(dartRegions);
-        latch.countDown();
-      }
+        @Override
+        public void onError(final RequestError error) {
+          if (RequestErrorCode.GET_NAVIGATION_INVALID_FILE.equals(error.getCode())) {
+            LOG.info(getShortErrorMessage("analysis_getNavigation()", filePath, error));
+          }
+          else {
+            logError("analysis_getNavigation()", filePath, error);
+          }
 
-      @Override
-      public void onError(final RequestError error) {
-        if (RequestErrorCode.GET_NAVIGATION_INVALID_FILE.equals(error.getCode())) {
-          LOG.info(getShortErrorMessage("analysis_getNavigation()", filePath, error));
-        }
-        else {
-          logError("analysis_getNavigation()", filePath, error);
+          myResultsCache.failed(entry);
         }
+      });
+    }
 
-        latch.countDown();
-      }
-    });
-
-    awaitForLatchCheckingCanceled(server, latch, GET_NAVIGATION_TIMEOUT);
+    awaitForLatchCheckingCanceled(server, entry.getLatch(), GET_NAVIGATION_TIMEOUT);
 
-    if (latch.getCount() > 0) {
+    if (entry.getLatch().getCount() > 0) {
       LOG.info("analysis_getNavigation() took more than " + GET_NAVIGATION_TIMEOUT + "ms for file " + filePath);
     }
 
-    return resultRef.get();
+    @SuppressWarnings("unchecked") final List<DartServerData.DartNavigationRegion> result =
+      (List<DartServerData.DartNavigationRegion>)entry.getResult();
+    return result == null ? null : new ArrayList<>(result);
   }
 
   @NotNull
   public List<SourceChange> edit_getAssists(@NotNull final VirtualFile file, final int _offset, final int _length) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final List<SourceChange> results = Lists.newArrayList();
 
     final AnalysisServer server = myServer;
     if (server == null) {
-      return results;
+      return Lists.newArrayList();
     }
 
-    final CountDownLatch latch = new CountDownLatch(1);
-    final int offset = getOriginalOffset(file, _offset);
-    final int length = getOriginalOffset(file, _offset + _length) - offset;
-    server.edit_getAssists(filePath, offset, length, new GetAssistsConsumer() {
-      @Override
-      public void computedSourceChanges(List<SourceChange> sourceChanges) {
-        results.addAll(sourceChanges);
-        latch.countDown();
-      }
+    final Ref<Boolean> isNew = Ref.create();
+    final DartServerResultsCache.Entry entry =
+      myResultsCache.getOrCreate(DartServerResultsCache.Kind.ASSISTS, file.getPath(), _offset, _length, getDocumentStamp(file), isNew);
 
-      @Override
-      public void onError(final RequestError error) {
-        logError("edit_getAssists()", filePath, error);
-        latch.countDown();
-      }
-    });
+    if (isNew.get()) {
+      final int offset = getOriginalOffset(file, _offset);
+      final int length = getOriginalOffset(file, _offset + _length) - offset;
+      server.edit_getAssists(filePath, offset, length, new GetAssistsConsumer() {
+        @Override
+        public void computedSourceChanges(List<SourceChange> sourceChanges) {
+          myResultsCache.completed(entry, sourceChanges);
+        }
 
-    awaitForLatchCheckingCanceled(server, latch, GET_ASSISTS_TIMEOUT);
-    return results;
+        @Override
+        public void onError(final RequestError error) {
+          logError("edit_getAssists()", filePath, error);
+          myResultsCache.failed(entry);
+        }
+      });
+    }
+
+    awaitForLatchCheckingCanceled(server, entry.getLatch(), GET_ASSISTS_TIMEOUT);
+
+    @SuppressWarnings("unchecked") final List<SourceChange> result = (List<SourceChange>)entry.getResult();
+    return result == null ? Lists.newArrayList() : new ArrayList<>(result);
   }
 
   public boolean edit_isPostfixCompletionApplicable(VirtualFile file, int _offset, String key) {
@@ -1133,23 +1273,42 @@ public class DartAnalysisServerService implements Disposable {
     final AnalysisServer server = myServer;
     if (server == null) return;
 
-    final CountDownLatch latch = new CountDownLatch(1);
-    final int offset = getOriginalOffset(file, _offset);
-    server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
-      @Override
-      public void computedFixes(final List<AnalysisErrorFixes> fixes) {
-        consumer.consume(fixes);
-        latch.countDown();
-      }
+    final Ref<Boolean> isNew = Ref.create();
+    final DartServerResultsCache.Entry entry =
+      myResultsCache.getOrCreate(DartServerResultsCache.Kind.FIXES, file.getPath(), _offset, 0, getDocumentStamp(file), isNew);
 
-      @Override
-      public void onError(final RequestError error) {
-        logError("edit_getFixes()", filePath, error);
-        latch.countDown();
-      }
-    });
+    if (isNew.get()) {
+      final int offset = getOriginalOffset(file, _offset);
+      server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
+        @Override
+        public void computedFixes(final List<AnalysisErrorFixes> fixes) {
+          myResultsCache.completed(entry, fixes);
+        }
+
+        @Override
+        public void onError(final RequestError error) {
+          logError("edit_getFixes()", filePath, error);
+          myResultsCache.failed(entry);
+        }
+      });
+    }
 
-    awaitForLatchCheckingCanceled(server, latch, GET_FIXES_TIMEOUT);
+    // the consumer is notified once, either right away if the result arrives in time, or later when the server responds
+    if (!awaitForLatchCheckingCanceled(server, entry.getLatch(), GET_FIXES_TIMEOUT)) {
+      entry.whenDone(() -> notifyFixesConsumer(entry, consumer));
+      return;
+    }
+
+    notifyFixesConsumer(entry, consumer);
+  }
+
+  private static void notifyFixesConsumer(@NotNull final DartServerResultsCache.Entry entry,
+                                          @NotNull final Consumer<List<AnalysisErrorFixes>> consumer) {
+    @SuppressWarnings("unchecked") final List<AnalysisErrorFixes> fixes = (List<AnalysisErrorFixes>)entry.getResult();
+    if (fixes != null) {
+      // the cached list is shared by all callers
+      consumer.consume(new ArrayList<>(fixes));
+    }
   }
 
   public void search_findElementReferences(@NotNull final VirtualFile file,
@@ -1811,6 +1970,8 @@ public class DartAnalysisServerService implements Disposable {
       myServer = null;
       mySdkHome = null;
       myFilePathWithOverlaidContentToTimestamp.clear();
+      myOverlayEditsTracker.reset();
+      myResultsCache.clear();
       myVisibleFiles.clear();
       myChangedDocuments.clear();
       myServerData.clearData();
@@ -1872,16 +2033,16 @@ public class DartAnalysisServerService implements Disposable {
     }
   }
 
+  /**
+   * Doesn't block, may be called on each Project View repaint.
+   */
   public boolean isFileWithErrors(@NotNull final VirtualFile file) {
-    synchronized (myFilePathsWithErrors) {
-      return file.isDirectory() ? myFolderPathsWithErrors.get(file.getPath()) > 0 : myFilePathsWithErrors.contains(file.getPath());
-    }
+    return file.isDirectory() ? myFilesWithErrors.getFilesWithErrorsCount(file.getPath()) > 0
+                              : myFilesWithErrors.isFileWithErrors(file.getPath());
   }
 
   public int getFilePathsWithErrorsHash() {
-    synchronized (myFilePathsWithErrors) {
-      return myFilePathsWithErrors.hashCode();
-    }
+    return myFilesWithErrors.getHash();
   }
 
   private void logError(@NotNull final String methodName, @Nullable final String filePath, @NotNull final RequestError error) {
@@ -2,7 +2,6 @@ package com.jetbrains.lang.dart.analyzer;
 
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.editor.colors.EditorColorsScheme;
@@ -71,7 +70,12 @@ public class DartClosingLabelManager {
     myEventDispatcher.addListener(listener, parentDisposable);
   }
 
-  void computedClosingLabels(@NotNull Project project, @NotNull final String filePath, @NotNull final List<ClosingLabel> labels) {
+  /**
+   * Replaces closing labels in all editors of the file, must be called in EDT.
+   */
+  void updateClosingLabels(@NotNull Project project, @NotNull final String filePath, @NotNull final List<ClosingLabel> labels) {
+    ApplicationManager.getApplication().assertIsDispatchThread();
+
     if (!getShowClosingLabels()) {
       return;
     }
@@ -81,54 +85,50 @@ public class DartClosingLabelManager {
       return;
     }
 
-    final Runnable runnable = () -> {
-      for (final FileEditor fileEditor : FileEditorManager.getInstance(project).getAllEditors(file)) {
-        if (!(fileEditor instanceof TextEditor)) {
-          continue;
-        }
+    for (final FileEditor fileEditor : FileEditorManager.getInstance(project).getAllEditors(file)) {
+      if (!(fileEditor instanceof TextEditor)) {
+        continue;
+      }
 
-        final TextEditor textEditor = (TextEditor)fileEditor;
-        final Editor editor = textEditor.getEditor();
-        final InlayModel inlayModel = editor.getInlayModel();
+      final TextEditor textEditor = (TextEditor)fileEditor;
+      final Editor editor = textEditor.getEditor();
+      final InlayModel inlayModel = editor.getInlayModel();
 
-        clearEditorInlays(editor);
+      clearEditorInlays(editor);
 
-        // Display combined labels as `// Foo, Bar`, not `// Foo // Bar`.
+      // Display combined labels as `// Foo, Bar`, not `// Foo // Bar`.
 
-        // sort the new inlays by starting offset, reversed order
-        labels.sort((label1, label2) -> label2.getOffset() - label1.getOffset());
+      // sort the new inlays by starting offset, reversed order
+      labels.sort((label1, label2) -> label2.getOffset() - label1.getOffset());
 
-        final DartAnalysisServerService service = DartAnalysisServerService.getInstance(project);
+      final DartAnalysisServerService service = DartAnalysisServerService.getInstance(project);
 
-        // create the inlay text for each line
-        Map<Integer, String> lineText = new HashMap<>();
-        for (ClosingLabel label : labels) {
-          final int offset = service.getConvertedOffset(file, label.getOffset() + label.getLength());
-          if (offset >= editor.getDocument().getTextLength()) {
-            // probably outdated data from server; up-to-date data will come soon
-            lineText.clear();
-            break;
-          }
+      // create the inlay text for each line
+      Map<Integer, String> lineText = new HashMap<>();
+      for (ClosingLabel label : labels) {
+        final int offset = service.getConvertedOffset(file, label.getOffset() + label.getLength());
+        if (offset >= editor.getDocument().getTextLength()) {
+          // probably outdated data from server; up-to-date data will come soon
+          lineText.clear();
+          break;
+        }
 
-          final Integer line = editor.getDocument().getLineNumber(offset);
+        final Integer line = editor.getDocument().getLineNumber(offset);
 
-          if (lineText.containsKey(line)) {
-            lineText.put(line, lineText.get(line) + ", " + label.getLabel());
-          }
-          else {
-            lineText.put(line, "// " + label.getLabel());
-          }
+        if (lineText.containsKey(line)) {
+          lineText.put(line, lineText.get(line) + ", " + label.getLabel());
         }
-
-        // build inlays from the line labels
-        for (Integer line : lineText.keySet()) {
-          inlayModel.addInlineElement(
-            editor.getDocument().getLineEndOffset(line), true, new TextLabelCustomElementRenderer(lineText.get(line)));
+        else {
+          lineText.put(line, "// " + label.getLabel());
         }
       }
-    };
 
-    ApplicationManager.getApplication().invokeLater(runnable, ModalityState.NON_MODAL, project.getDisposed());
+      // build inlays from the line labels
+      for (Integer line : lineText.keySet()) {
+        inlayModel.addInlineElement(
+          editor.getDocument().getLineEndOffset(line), true, new TextLabelCustomElementRenderer(lineText.get(line)));
+      }
+    }
   }
 
   private static void clearEditorInlays(@NotNull Editor editor) {
@@ -0,0 +1,92 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.util.PathUtil;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Files with red squiggles in the Project View and, for each folder, the number of such files in it (recursively).
+ * <p/>
+ * Reads don't take locks, so Project View repaint is never blocked by the thread that handles server notifications. Updates are
+ * serialized; a file that enters or leaves the set changes counts only on the path from its parent folder to the root, other
+ * subtrees are not touched. Updates that don't change the state of the file cost a single set lookup.
+ */
+class DartFilesWithErrors {
+  private final Set<String> myFilePaths = ContainerUtil.newConcurrentSet();
+  // missing folder means zero files with errors
+  private final ConcurrentMap<String, Integer> myFolderPathToCount = ContainerUtil.newConcurrentMap();
+
+  private final Object myWriteLock = new Object();
+  // equal to myFilePaths.hashCode(), maintained incrementally instead of iterating the set
+  private volatile int myHash;
+
+  /**
+   * @return {@code true} if the set has changed
+   */
+  boolean update(@NotNull final String filePath, final boolean hasErrors) {
+    if (hasErrors == myFilePaths.contains(filePath)) return false;
+
+    synchronized (myWriteLock) {
+      if (hasErrors) {
+        if (!myFilePaths.add(filePath)) return false;
+        myHash += filePath.hashCode();
+        updateFolderCounts(filePath, 1);
+      }
+      else {
+        if (!myFilePaths.remove(filePath)) return false;
+        myHash -= filePath.hashCode();
+        updateFolderCounts(filePath, -1);
+      }
+      return true;
+    }
+  }
+
+  private void updateFolderCounts(@NotNull final String filePath, final int delta) {
+    String folderPath = PathUtil.getParentPath(filePath);
+    while (!folderPath.isEmpty()) {
+      final Integer oldCount = myFolderPathToCount.get(folderPath);
+      final int newCount = (oldCount == null ? 0 : oldCount) + delta;
+      if (newCount > 0) {
+        myFolderPathToCount.put(folderPath, newCount);
+      }
+      else {
+        myFolderPathToCount.remove(folderPath);
+      }
+      folderPath = PathUtil.getParentPath(folderPath);
+    }
+  }
+
+  void clear() {
+    synchronized (myWriteLock) {
+      myFilePaths.clear();
+      myFolderPathToCount.clear();
+      myHash = 0;
+    }
+  }
+
+  boolean isFileWithErrors(@NotNull final String filePath) {
+    return myFilePaths.contains(filePath);
+  }
+
+  /**
+   * Number of files with errors in the folder, recursively.
+   */
+  int getFilesWithErrorsCount(@NotNull final String folderPath) {
+    final Integer count = myFolderPathToCount.get(folderPath);
+    return count == null ? 0 : count;
+  }
+
+  int size() {
+    return myFilePaths.size();
+  }
+
+  /**
+   * Same value as {@code hashCode()} of the set of file paths, computed in constant time.
+   */
+  int getHash() {
+    return myHash;
+  }
+}
@@ -0,0 +1,153 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import gnu.trove.THashMap;
+import org.dartlang.analysis.server.protocol.AddContentOverlay;
+import org.dartlang.analysis.server.protocol.ChangeContentOverlay;
+import org.dartlang.analysis.server.protocol.SourceEdit;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects document changes made since the overlaid content of a file was last sent to the Dart Analysis Server,
+ * so that a short {@link ChangeContentOverlay} can be sent instead of the whole document text.
+ * If the edit history of a document is lost (the server hasn't seen its content yet, or some change was missed) the whole text
+ * is sent as {@link AddContentOverlay}.
+ * <p/>
+ * This class is not thread-safe, all calls must be guarded by the lock of {@link DartAnalysisServerService}.
+ */
+class DartOverlayEditsTracker {
+
+  private static final long ONE_SECOND = 1000;
+
+  // key is a system-independent file path of a file with overlaid content
+  private final Map<String, PendingEdits> myFilePathToPendingEdits = new THashMap<>();
+
+  private long myTotalBytesSent;
+  private long myCurrentSecondStart;
+  private long myBytesSentInCurrentSecond;
+  private long myBytesSentInPreviousSecond;
+
+  private static class PendingEdits {
+    private final List<SourceEdit> myEdits = new ArrayList<>();
+    private long myDocumentStamp; // document modification stamp after the last collected edit
+    private int myEditsTextLength;
+    private boolean myHistoryLost;
+
+    private PendingEdits(long documentStamp) {
+      myDocumentStamp = documentStamp;
+    }
+  }
+
+  void beforeDocumentChange(@NotNull final String filePath, @NotNull final DocumentEvent e) {
+    final PendingEdits pending = myFilePathToPendingEdits.get(filePath);
+    if (pending == null || pending.myHistoryLost) return;
+
+    if (e.getDocument().getModificationStamp() != pending.myDocumentStamp) {
+      // some change has been missed, edits can't be applied on top of the content known to the server
+      pending.myHistoryLost = true;
+      pending.myEdits.clear();
+      return;
+    }
+
+    final String replacement = e.getNewFragment().toString();
+    pending.myEdits.add(new SourceEdit(e.getOffset(), e.getOldLength(), replacement, null));
+    pending.myEditsTextLength += replacement.length();
+  }
+
+  void documentChanged(@NotNull final String filePath, @NotNull final DocumentEvent e) {
+    final PendingEdits pending = myFilePathToPendingEdits.get(filePath);
+    if (pending != null && !pending.myHistoryLost) {
+      pending.myDocumentStamp = e.getDocument().getModificationStamp();
+    }
+  }
+
+  /**
+   * Returns {@link ChangeContentOverlay} if all changes of the document since the previous call are known
+   * and sending them is cheaper than sending the whole text, otherwise returns {@link AddContentOverlay}.
+   */
+  @NotNull
+  Object createOverlay(@NotNull final String filePath, @NotNull final Document document, final boolean incrementalAllowed) {
+    final PendingEdits pending = myFilePathToPendingEdits.get(filePath);
+    if (incrementalAllowed &&
+        pending != null &&
+        !pending.myHistoryLost &&
+        pending.myDocumentStamp == document.getModificationStamp() &&
+        !pending.myEdits.isEmpty() &&
+        pending.myEditsTextLength < document.getTextLength()) {
+      final List<SourceEdit> edits = new ArrayList<>(pending.myEdits);
+      pending.myEdits.clear();
+      pending.myEditsTextLength = 0;
+
+      for (SourceEdit edit : edits) {
+        countBytesSent(edit.getReplacement());
+      }
+      return new ChangeContentOverlay(edits);
+    }
+
+    final String text = document.getText();
+    myFilePathToPendingEdits.put(filePath, new PendingEdits(document.getModificationStamp()));
+    countBytesSent(text);
+    return new AddContentOverlay(text);
+  }
+
+  void overlayRemoved(@NotNull final String filePath) {
+    myFilePathToPendingEdits.remove(filePath);
+  }
+
+  void reset() {
+    myFilePathToPendingEdits.clear();
+  }
+
+  long getTotalBytesSent() {
+    return myTotalBytesSent;
+  }
+
+  /**
+   * Returns the number of bytes of overlaid content sent to the server during the last full second.
+   */
+  long getBytesSentPerSecond() {
+    rollSecond(System.currentTimeMillis());
+    return myBytesSentInPreviousSecond;
+  }
+
+  private void countBytesSent(@NotNull final String text) {
+    final long bytes = getUtf8Length(text);
+    rollSecond(System.currentTimeMillis());
+    myBytesSentInCurrentSecond += bytes;
+    myTotalBytesSent += bytes;
+  }
+
+  private void rollSecond(final long now) {
+    if (now - myCurrentSecondStart < ONE_SECOND) return;
+
+    myBytesSentInPreviousSecond = now - myCurrentSecondStart < 2 * ONE_SECOND ? myBytesSentInCurrentSecond : 0;
+    myBytesSentInCurrentSecond = 0;
+    myCurrentSecondStart = now - (now % ONE_SECOND);
+  }
+
+  private static long getUtf8Length(@NotNull final String text) {
+    long length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      }
+      else if (c < 0x800) {
+        length += 2;
+      }
+      else if (Character.isHighSurrogate(c)) {
+        length += 4;
+        i++;
+      }
+      else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
@@ -0,0 +1,93 @@
+package com.jetbrains.lang.dart.analyzer;
+
+/**
+ * Rules for updating regions received from the Dart Analysis Server when the document is edited locally, before the server sends
+ * fresh data. A document change is treated as deletion of {@code oldLength} characters at {@code eventOffset} followed by
+ * insertion of {@code newLength} characters at the same offset.
+ * <p/>
+ * Results are packed into a {@code long} by {@link #pack(int, int)} to avoid allocations, {@link #DELETED} means that the region
+ * must be dropped.
+ */
+final class DartRegionShiftUtil {
+
+  static final long DELETED = -1L;
+
+  private DartRegionShiftUtil() {
+  }
+
+  static long pack(final int offset, final int length) {
+    return ((long)offset << 32) | (length & 0xFFFFFFFFL);
+  }
+
+  static int offset(final long packed) {
+    return (int)(packed >>> 32);
+  }
+
+  static int length(final long packed) {
+    return (int)packed;
+  }
+
+  /**
+   * Regions after the change are shifted, regions touched by the change are deleted.
+   * Used for regions whose meaning is lost as soon as their text changes: errors, navigation, overrides, etc.
+   */
+  static long shiftDeletingTouched(final int offset,
+                                   final int length,
+                                   final int eventOffset,
+                                   final int oldLength,
+                                   final int newLength) {
+    if (eventOffset + oldLength <= offset) {
+      return pack(offset + newLength - oldLength, length);
+    }
+    if (eventOffset >= offset + length) {
+      return pack(offset, length);
+    }
+    return DELETED;
+  }
+
+  /**
+   * Regions after the change are shifted, regions that contain the change are resized, regions removed by the change are deleted.
+   * Text inserted at the start of a region shifts it, but text that replaces a part of a region, even at its start, stays in it.
+   * Used for highlighting, where a slightly inaccurate region is better than flickering.
+   */
+  static long shiftUpdatingTouched(int offset,
+                                   int length,
+                                   final int eventOffset,
+                                   final int oldLength,
+                                   final int newLength) {
+    boolean replacedInside = false;
+    if (oldLength > 0) {
+      final int eventRightOffset = eventOffset + oldLength;
+      final int regionRightOffset = offset + length;
+
+      if (eventRightOffset <= offset) {
+        offset -= oldLength;
+      }
+      else if (offset <= eventOffset && eventRightOffset <= regionRightOffset && length != oldLength) {
+        length -= oldLength;
+        replacedInside = true;
+      }
+      else if (eventOffset < regionRightOffset) {
+        return DELETED;
+      }
+    }
+
+    if (newLength > 0) {
+      if (replacedInside || offset < eventOffset && eventOffset < offset + length) {
+        length += newLength;
+      }
+      else if (eventOffset <= offset) {
+        offset += newLength;
+      }
+    }
+
+    return pack(offset, length);
+  }
+
+  /**
+   * Offset of a navigation target in the edited file. Targets after the change are shifted, other targets are kept.
+   */
+  static int shiftTargetOffset(final int targetOffset, final int eventOffset, final int oldLength, final int newLength) {
+    return targetOffset >= eventOffset + oldLength ? targetOffset + newLength - oldLength : targetOffset;
+  }
+}
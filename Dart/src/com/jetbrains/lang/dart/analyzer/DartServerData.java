@@ -1,9 +1,6 @@
 package com.jetbrains.lang.dart.analyzer;
 
 import com.google.common.collect.Sets;
-import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
@@ -14,6 +11,7 @@ import com.intellij.psi.impl.source.resolve.ResolveCache;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.util.EventDispatcher;
 import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
 import gnu.trove.THashMap;
 import org.dartlang.analysis.server.protocol.*;
 import org.jetbrains.annotations.NotNull;
@@ -28,12 +26,14 @@ public class DartServerData {
   }
 
   private final DartAnalysisServerService myService;
+  private final DartServerEdtUpdater myEdtUpdater;
 
   private EventDispatcher<OutlineListener> myEventDispatcher = EventDispatcher.create(OutlineListener.class);
 
   private final Map<String, List<DartError>> myErrorData = Collections.synchronizedMap(new THashMap<>());
-  private final Map<String, List<DartHighlightRegion>> myHighlightData = Collections.synchronizedMap(new THashMap<>());
-  private final Map<String, List<DartNavigationRegion>> myNavigationData = Collections.synchronizedMap(new THashMap<>());
+  // highlight and navigation regions are the most numerous, they are kept packed in immutable per-file snapshots
+  private final Map<String, PackedHighlightRegions> myHighlightData = ContainerUtil.newConcurrentMap();
+  private final Map<String, PackedNavigationRegions> myNavigationData = ContainerUtil.newConcurrentMap();
   private final Map<String, List<DartOverrideMember>> myOverrideData = Collections.synchronizedMap(new THashMap<>());
   private final Map<String, List<DartRegion>> myImplementedClassData = Collections.synchronizedMap(new THashMap<>());
   private final Map<String, List<DartRegion>> myImplementedMemberData = Collections.synchronizedMap(new THashMap<>());
@@ -46,6 +46,12 @@ public class DartServerData {
 
   DartServerData(@NotNull final DartAnalysisServerService service) {
     myService = service;
+    myEdtUpdater = new DartServerEdtUpdater(service);
+  }
+
+  @NotNull
+  String getEdtUpdatesStatistics() {
+    return myEdtUpdater.getStatistics();
   }
 
   boolean isErrorInfoLost(@NotNull final String filePath) {
@@ -81,41 +87,26 @@ public class DartServerData {
   void computedClosingLabels(@NotNull final String filePath, @NotNull final List<ClosingLabel> labels) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    DartClosingLabelManager.getInstance().computedClosingLabels(myService.getProject(), FileUtil.toSystemIndependentName(filePath), labels);
+    final DartClosingLabelManager closingLabelManager = DartClosingLabelManager.getInstance();
+    if (!closingLabelManager.getShowClosingLabels()) return;
+
+    myEdtUpdater.scheduleUpdate(DartServerEdtUpdater.Kind.CLOSING_LABELS, filePath,
+                                () -> closingLabelManager.updateClosingLabels(myService.getProject(), filePath, labels));
   }
 
   void computedHighlights(@NotNull final String filePath, @NotNull final List<HighlightRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartHighlightRegion> newRegions = new ArrayList<>(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
-
-    for (HighlightRegion region : regions) {
-      if (region.getLength() > 0) {
-        final int offset = myService.getConvertedOffset(file, region.getOffset());
-        final int length = myService.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-        newRegions.add(new DartHighlightRegion(offset, length, region.getType()));
-      }
-    }
-
-    myHighlightData.put(filePath, newRegions);
+    myHighlightData.put(filePath, PackedHighlightRegions.create(myService, file, regions));
     forceFileAnnotation(file, false);
   }
 
   void computedNavigation(@NotNull final String filePath, @NotNull final List<NavigationRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartNavigationRegion> newRegions = new ArrayList<>(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
-
-    for (NavigationRegion region : regions) {
-      if (region.getLength() > 0) {
-        final DartNavigationRegion dartNavigationRegion = createDartNavigationRegion(myService, file, region);
-        newRegions.add(dartNavigationRegion);
-      }
-    }
-
-    myNavigationData.put(filePath, newRegions);
+    myNavigationData.put(filePath, PackedNavigationRegions.create(myService, file, regions));
     forceFileAnnotation(file, true);
   }
 
@@ -123,9 +114,7 @@ public class DartServerData {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
     myOutlineData.put(filePath, outline);
-    ApplicationManager.getApplication().invokeLater(() -> myEventDispatcher.getMulticaster().outlineUpdated(filePath),
-                                                    ModalityState.NON_MODAL,
-                                                    myService.getProject().getDisposed());
+    myEdtUpdater.scheduleUpdate(DartServerEdtUpdater.Kind.OUTLINE, filePath, () -> myEventDispatcher.getMulticaster().outlineUpdated(filePath));
   }
 
   @NotNull
@@ -271,12 +260,7 @@ public class DartServerData {
         ResolveCache.getInstance(project).clearCache(true);
       }
 
-      // It's ok to call DaemonCodeAnalyzer.restart() right in this thread, without invokeLater(),
-      // but it would cache RemoteAnalysisServerImpl$ServerResponseReaderThread in FileStatusMap.threads and as a result,
-      // DartAnalysisServerService.myProject would be leaked in tests
-      ApplicationManager.getApplication().invokeLater(() -> DaemonCodeAnalyzer.getInstance(project).restart(),
-                                                      ModalityState.NON_MODAL,
-                                                      project.getDisposed());
+      myEdtUpdater.restartHighlighting(file);
     }
   }
 
@@ -349,119 +333,78 @@ public class DartServerData {
     final String filePath = file.getPath();
     myFilePathsWithUnsentChanges.add(filePath);
 
-    boolean someRegionDeleted = updateRegionsDeletingTouched(filePath, myErrorData.get(filePath), e);
-    if (someRegionDeleted) {
+    // Stored data is never modified in place, it's replaced with updated copies, so that readers in other threads always see
+    // consistent regions while the server is busy with the new content.
+    final int eventOffset = e.getOffset();
+    final int oldLength = e.getOldLength();
+    final int newLength = e.getNewLength();
+
+    final List<DartError> oldErrors = myErrorData.get(filePath);
+    final List<DartError> newErrors = myErrorData.computeIfPresent(filePath, (path, errors) ->
+      shiftRegionsDeletingTouched(errors, eventOffset, oldLength, newLength));
+    if (oldErrors != null && newErrors != null && newErrors.size() < oldErrors.size()) {
       myFilePathsWithLostErrorInfo.add(filePath);
     }
-    updateRegionsUpdatingTouched(myHighlightData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myNavigationData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myOverrideData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedClassData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedMemberData.get(filePath), e);
+
+    myHighlightData.computeIfPresent(filePath, (path, regions) -> regions.afterDocumentChange(eventOffset, oldLength, newLength));
+    myNavigationData.computeIfPresent(filePath, (path, regions) -> regions.afterDocumentChange(path, eventOffset, oldLength, newLength));
+    myOverrideData.computeIfPresent(filePath, (path, regions) -> shiftRegionsDeletingTouched(regions, eventOffset, oldLength, newLength));
+    myImplementedClassData.computeIfPresent(filePath, (path, regions) ->
+      shiftRegionsDeletingTouched(regions, eventOffset, oldLength, newLength));
+    myImplementedMemberData.computeIfPresent(filePath, (path, regions) ->
+      shiftRegionsDeletingTouched(regions, eventOffset, oldLength, newLength));
     // A bit outdated outline data is not a big problem, updated data will come shortly
   }
 
   /**
-   * @return {@code true} if at least one region has been deleted, {@code false} if updated only or nothing done at all
+   * Returns a copy of {@code regions} that reflects the document change, see {@link DartRegionShiftUtil#shiftDeletingTouched}.
+   * Returns {@code regions} itself if no region is affected.
    */
-  private static boolean updateRegionsDeletingTouched(@NotNull final String filePath,
-                                                      @Nullable final List<? extends DartRegion> regions,
-                                                      @NotNull final DocumentEvent e) {
-    if (regions == null) return false;
-
-    boolean regionDeleted = false;
-
-    // delete touched regions, shift untouched
-    final int eventOffset = e.getOffset();
-    final int deltaLength = e.getNewLength() - e.getOldLength();
-
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
-
-      if (region instanceof DartNavigationRegion) {
-        // may be we'd better delete target touched by editing?
-        for (DartNavigationTarget target : ((DartNavigationRegion)region).getTargets()) {
-          if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
-            target.myConvertedOffset += deltaLength;
-          }
-        }
-      }
-
-      if (deltaLength > 0) {
-        // Something was typed. Shift untouched regions, delete touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (region.myOffset < eventOffset && eventOffset < region.myOffset + region.myLength) {
-          iterator.remove();
-          regionDeleted = true;
-        }
+  @NotNull
+  static <T extends DartRegion> List<T> shiftRegionsDeletingTouched(@NotNull final List<T> regions,
+                                                                  final int eventOffset,
+                                                                  final int oldLength,
+                                                                  final int newLength) {
+    if (regions.isEmpty() || (oldLength == 0 && newLength == 0)) return regions;
+
+    List<T> result = null;
+
+    for (int i = 0; i < regions.size(); i++) {
+      final T region = regions.get(i);
+      final long shifted = DartRegionShiftUtil.shiftDeletingTouched(region.myOffset, region.myLength, eventOffset, oldLength, newLength);
+
+      if (result == null) {
+        if (shifted == DartRegionShiftUtil.pack(region.myOffset, region.myLength)) continue;
+        result = new ArrayList<>(regions.size());
+        result.addAll(regions.subList(0, i));
       }
-      else if (deltaLength < 0) {
-        // Some text was deleted. Shift untouched regions, delete touched.
-        final int eventRightOffset = eventOffset - deltaLength;
 
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (eventOffset < region.myOffset + region.myLength) {
-          iterator.remove();
-          regionDeleted = true;
-        }
+      if (shifted != DartRegionShiftUtil.DELETED) {
+        //noinspection unchecked
+        result.add((T)region.withRange(DartRegionShiftUtil.offset(shifted), DartRegionShiftUtil.length(shifted)));
       }
     }
 
-    return regionDeleted;
-  }
-
-  private static void updateRegionsUpdatingTouched(@Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
-
-    final int eventOffset = e.getOffset();
-    final int deltaLength = e.getNewLength() - e.getOldLength();
-
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
-
-      if (deltaLength > 0) {
-        // Something was typed. Shift untouched regions, update touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (region.myOffset < eventOffset && eventOffset < region.myOffset + region.myLength) {
-          region.myLength += deltaLength;
-        }
-      }
-      else if (deltaLength < 0) {
-        // Some text was deleted. Shift untouched regions, delete or update touched.
-        final int eventRightOffset = eventOffset - deltaLength;
-        final int regionRightOffset = region.myOffset + region.myLength;
-
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
-          region.myLength += deltaLength;
-        }
-        else if (eventOffset < regionRightOffset) {
-          iterator.remove();
-        }
-      }
-    }
+    return result != null ? result : regions;
   }
 
   public static class DartRegion {
-    protected int myOffset;
-    protected int myLength;
+    protected final int myOffset;
+    protected final int myLength;
 
     DartRegion(final int offset, final int length) {
       myOffset = offset;
       myLength = length;
     }
 
+    /**
+     * Returns a copy of this region with the given range. Subclasses must return an instance of their own class.
+     */
+    @NotNull
+    DartRegion withRange(final int offset, final int length) {
+      return new DartRegion(offset, length);
+    }
+
     public final int getOffset() {
       return myOffset;
     }
@@ -484,9 +427,15 @@ public class DartServerData {
   public static class DartHighlightRegion extends DartRegion {
     private final String type;
 
-    private DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
+    DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
       super(offset, length);
-      this.type = type.intern();
+      this.type = type; // interned by PackedHighlightRegions
+    }
+
+    @NotNull
+    @Override
+    DartHighlightRegion withRange(final int offset, final int length) {
+      return new DartHighlightRegion(offset, length, type);
     }
 
     public String getType() {
@@ -508,6 +457,20 @@ public class DartServerData {
       myMessage = error.getMessage();
     }
 
+    private DartError(@NotNull final DartError error, final int offset, final int length) {
+      super(offset, length);
+      myAnalysisErrorFileSD = error.myAnalysisErrorFileSD;
+      mySeverity = error.mySeverity;
+      myCode = error.myCode;
+      myMessage = error.myMessage;
+    }
+
+    @NotNull
+    @Override
+    DartError withRange(final int offset, final int length) {
+      return new DartError(this, offset, length);
+    }
+
     public String getAnalysisErrorFileSD() {
       return myAnalysisErrorFileSD;
     }
@@ -538,6 +501,12 @@ public class DartServerData {
       myTargets = targets;
     }
 
+    @NotNull
+    @Override
+    DartNavigationRegion withRange(final int offset, final int length) {
+      return new DartNavigationRegion(offset, length, myTargets);
+    }
+
     @Override
     public String toString() {
       return "DartNavigationRegion(" + myOffset + ", " + myLength + ")";
@@ -555,12 +524,31 @@ public class DartServerData {
 
     private int myConvertedOffset = -1;
 
-    private DartNavigationTarget(@NotNull final NavigationTarget target) {
+    DartNavigationTarget(@NotNull final NavigationTarget target) {
       myFile = FileUtil.toSystemIndependentName(target.getFile().trim()).intern();
       myOriginalOffset = target.getOffset();
       myKind = target.getKind().intern();
     }
 
+    private DartNavigationTarget(@NotNull final DartNavigationTarget target, final int convertedOffset) {
+      myFile = target.myFile;
+      myOriginalOffset = target.myOriginalOffset;
+      myKind = target.myKind;
+      myConvertedOffset = convertedOffset;
+    }
+
+    /**
+     * Returns a shifted copy of this target if it points to the edited file after the changed text, otherwise returns this target.
+     */
+    @NotNull
+    DartNavigationTarget shifted(@NotNull final String filePath, final int eventOffset, final int oldLength, final int newLength) {
+      if (!myFile.equals(filePath)) return this;
+
+      // may be we'd better delete target touched by editing?
+      final int offset = DartRegionShiftUtil.shiftTargetOffset(myConvertedOffset, eventOffset, oldLength, newLength);
+      return offset == myConvertedOffset ? this : new DartNavigationTarget(this, offset);
+    }
+
     public String getFile() {
       return myFile;
     }
@@ -590,6 +578,12 @@ public class DartServerData {
       myInterfaceMembers = interfaceMembers;
     }
 
+    @NotNull
+    @Override
+    DartOverrideMember withRange(final int offset, final int length) {
+      return new DartOverrideMember(offset, length, mySuperclassMember, myInterfaceMembers);
+    }
+
     @Nullable
     public OverriddenMember getSuperclassMember() {
       return mySuperclassMember;
@@ -0,0 +1,116 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Alarm;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules EDT work caused by Analysis Server notifications. Work for a file and kind that has not run yet is replaced by newer work
+ * of the same kind, so a burst of notifications for a file costs a single EDT event. Work for visible files runs at the next
+ * {@code invokeLater()}, work for other files is deferred, so that it doesn't delay updates of the editors the user looks at.
+ * Highlighting restarts of all files scheduled before the EDT gets to them are done at once.
+ */
+class DartServerEdtUpdater {
+
+  enum Kind {CLOSING_LABELS, OUTLINE}
+
+  private static final int BACKGROUND_FILES_DELAY = 500;
+
+  @NotNull private final DartAnalysisServerService myService;
+  @NotNull private final Project myProject;
+  @NotNull private final Alarm myBackgroundAlarm;
+
+  private final Map<String, Runnable> myPendingUpdates = ContainerUtil.newConcurrentMap();
+  private final Set<VirtualFile> myFilesToRestartHighlighting = new THashSet<>(); // guarded by itself
+
+  private final AtomicLong myApplied = new AtomicLong();
+  private final AtomicLong myDropped = new AtomicLong();
+  private final AtomicLong myDeferred = new AtomicLong();
+  private final AtomicLong myRestartsRequested = new AtomicLong();
+  private final AtomicLong myRestartsDone = new AtomicLong();
+
+  DartServerEdtUpdater(@NotNull final DartAnalysisServerService service) {
+    myService = service;
+    myProject = service.getProject();
+    myBackgroundAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, myProject);
+  }
+
+  void scheduleUpdate(@NotNull final Kind kind, @NotNull final String filePath, @NotNull final Runnable runnable) {
+    final String key = kind + ":" + filePath;
+    if (myPendingUpdates.put(key, runnable) != null) {
+      // already scheduled, it will run the newest runnable
+      myDropped.incrementAndGet();
+      return;
+    }
+
+    final Runnable update = () -> {
+      final Runnable latest = myPendingUpdates.remove(key);
+      if (latest != null) {
+        myApplied.incrementAndGet();
+        latest.run();
+      }
+    };
+
+    if (myService.isFileVisible(filePath)) {
+      ApplicationManager.getApplication().invokeLater(update, ModalityState.NON_MODAL, myProject.getDisposed());
+    }
+    else {
+      myDeferred.incrementAndGet();
+      myBackgroundAlarm.addRequest(update, BACKGROUND_FILES_DELAY, ModalityState.NON_MODAL);
+    }
+  }
+
+  void restartHighlighting(@NotNull final VirtualFile file) {
+    myRestartsRequested.incrementAndGet();
+
+    synchronized (myFilesToRestartHighlighting) {
+      final boolean scheduled = !myFilesToRestartHighlighting.isEmpty();
+      myFilesToRestartHighlighting.add(file);
+      if (scheduled) return;
+    }
+
+    // It's ok to call DaemonCodeAnalyzer.restart() right in this thread, without invokeLater(),
+    // but it would cache RemoteAnalysisServerImpl$ServerResponseReaderThread in FileStatusMap.threads and as a result,
+    // DartAnalysisServerService.myProject would be leaked in tests
+    ApplicationManager.getApplication().invokeLater(() -> {
+      final List<VirtualFile> files;
+      synchronized (myFilesToRestartHighlighting) {
+        files = new ArrayList<>(myFilesToRestartHighlighting);
+        myFilesToRestartHighlighting.clear();
+      }
+
+      final DaemonCodeAnalyzer daemonCodeAnalyzer = DaemonCodeAnalyzer.getInstance(myProject);
+      for (VirtualFile virtualFile : files) {
+        final PsiFile psiFile = virtualFile.isValid() ? PsiManager.getInstance(myProject).findFile(virtualFile) : null;
+        if (psiFile != null) {
+          myRestartsDone.incrementAndGet();
+          daemonCodeAnalyzer.restart(psiFile);
+        }
+      }
+    }, ModalityState.NON_MODAL, myProject.getDisposed());
+  }
+
+  /**
+   * Human-readable counters of updates applied and dropped because newer ones came before they had run.
+   */
+  @NotNull
+  String getStatistics() {
+    return "editor updates: " + myApplied.get() + " applied, " + myDropped.get() + " superseded, " +
+           myDeferred.get() + " deferred for background files\n" +
+           "highlighting restarts: " + myRestartsRequested.get() + " requested, " + myRestartsDone.get() + " done";
+  }
+}
@@ -0,0 +1,210 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.common.cache.CacheBuilder;
+import com.intellij.openapi.util.Ref;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived cache of results of on-demand Analysis Server requests (hover, navigation, assists, fixes), keyed by request kind,
+ * file, offset, length and document modification stamp. Identical requests issued while the first one is still in flight share it:
+ * only the first caller sends the request, others wait for the same {@link Entry}.
+ * <p/>
+ * Entries of a file are dropped when the server sends new analysis results for it, all entries are dropped when any overlaid
+ * content is sent to the server, because edits in one file may change results in another.
+ */
+final class DartServerResultsCache {
+
+  enum Kind {HOVER, NAVIGATION, ASSISTS, FIXES}
+
+  private static final int MAX_ENTRIES = 64;
+  // protects from waiting forever for a request that the server never answered
+  private static final long EXPIRE_AFTER_SECONDS = 30;
+
+  static final class Entry {
+    private final CountDownLatch myLatch = new CountDownLatch(1);
+    private volatile Object myResult;
+    private List<Runnable> myCallbacks; // guarded by this
+
+    /**
+     * Runs the callback once the request has completed or failed, right away if it already has.
+     */
+    void whenDone(@NotNull final Runnable callback) {
+      synchronized (this) {
+        if (myLatch.getCount() > 0) {
+          if (myCallbacks == null) myCallbacks = new ArrayList<>();
+          myCallbacks.add(callback);
+          return;
+        }
+      }
+      callback.run();
+    }
+
+    private void done(@Nullable final Object result) {
+      final List<Runnable> callbacks;
+      synchronized (this) {
+        if (result != null) myResult = result;
+        myLatch.countDown();
+        callbacks = myCallbacks;
+        myCallbacks = null;
+      }
+
+      if (callbacks != null) {
+        for (Runnable callback : callbacks) {
+          callback.run();
+        }
+      }
+    }
+
+    @NotNull
+    CountDownLatch getLatch() {
+      return myLatch;
+    }
+
+    /**
+     * Returns {@code null} if the request is still in flight or has failed.
+     */
+    @Nullable
+    Object getResult() {
+      return myResult;
+    }
+  }
+
+  private static final class Key {
+    @NotNull private final Kind myKind;
+    @NotNull private final String myFilePath;
+    private final int myOffset;
+    private final int myLength;
+    private final long myStamp;
+
+    private Key(@NotNull final Kind kind, @NotNull final String filePath, final int offset, final int length, final long stamp) {
+      myKind = kind;
+      myFilePath = filePath;
+      myOffset = offset;
+      myLength = length;
+      myStamp = stamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      final Key key = (Key)o;
+      return myKind == key.myKind &&
+             myOffset == key.myOffset &&
+             myLength == key.myLength &&
+             myStamp == key.myStamp &&
+             myFilePath.equals(key.myFilePath);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = myKind.hashCode();
+      result = 31 * result + myFilePath.hashCode();
+      result = 31 * result + myOffset;
+      result = 31 * result + myLength;
+      result = 31 * result + Long.hashCode(myStamp);
+      return result;
+    }
+  }
+
+  private static final class Counters {
+    private final AtomicLong myHits = new AtomicLong();
+    private final AtomicLong myJoined = new AtomicLong();
+    private final AtomicLong myMisses = new AtomicLong();
+  }
+
+  private final ConcurrentMap<Key, Entry> myEntries = CacheBuilder.newBuilder()
+    .maximumSize(MAX_ENTRIES)
+    .expireAfterWrite(EXPIRE_AFTER_SECONDS, TimeUnit.SECONDS)
+    .<Key, Entry>build()
+    .asMap();
+
+  private final Counters[] myCounters = new Counters[Kind.values().length];
+
+  DartServerResultsCache() {
+    for (int i = 0; i < myCounters.length; i++) {
+      myCounters[i] = new Counters();
+    }
+  }
+
+  /**
+   * Returns the entry for the given request. If {@code isNew} is set to {@code true} then the caller must send the request to the
+   * server and report its outcome via {@link #completed(Entry, Object)} or {@link #failed(Entry)}.
+   */
+  @NotNull
+  Entry getOrCreate(@NotNull final Kind kind,
+                    @NotNull final String filePath,
+                    final int offset,
+                    final int length,
+                    final long stamp,
+                    @NotNull final Ref<Boolean> isNew) {
+    final Key key = new Key(kind, filePath, offset, length, stamp);
+    final Counters counters = myCounters[kind.ordinal()];
+
+    final Entry existing = myEntries.get(key);
+    if (existing != null) {
+      (existing.myLatch.getCount() == 0 ? counters.myHits : counters.myJoined).incrementAndGet();
+      isNew.set(false);
+      return existing;
+    }
+
+    final Entry entry = new Entry();
+    final Entry raced = myEntries.putIfAbsent(key, entry);
+    if (raced != null) {
+      counters.myJoined.incrementAndGet();
+      isNew.set(false);
+      return raced;
+    }
+
+    counters.myMisses.incrementAndGet();
+    isNew.set(true);
+    return entry;
+  }
+
+  void completed(@NotNull final Entry entry, @NotNull final Object result) {
+    entry.done(result);
+  }
+
+  void failed(@NotNull final Entry entry) {
+    myEntries.values().remove(entry);
+    entry.done(null);
+  }
+
+  void invalidate(@NotNull final String filePath) {
+    myEntries.keySet().removeIf(key -> key.myFilePath.equals(filePath));
+  }
+
+  void clear() {
+    myEntries.clear();
+  }
+
+  /**
+   * Human-readable hit/in-flight/miss counters of each request kind.
+   */
+  @NotNull
+  String getStatistics() {
+    final StringBuilder builder = new StringBuilder();
+    for (Kind kind : Kind.values()) {
+      final Counters counters = myCounters[kind.ordinal()];
+      final long hits = counters.myHits.get();
+      final long joined = counters.myJoined.get();
+      final long total = hits + joined + counters.myMisses.get();
+
+      if (builder.length() > 0) builder.append('\n');
+      builder.append(kind.name().toLowerCase()).append(": ")
+        .append(total).append(" requests, ")
+        .append(hits).append(" cached, ")
+        .append(joined).append(" shared in-flight, hit rate ")
+        .append(total == 0 ? 0 : (hits + joined) * 100 / total).append('%');
+    }
+    return builder.toString();
+  }
+}
@@ -1,13 +1,20 @@
 package com.jetbrains.lang.dart.analyzer;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.ExceptionUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.IntArrayList;
 import com.intellij.util.text.CharArrayUtil;
-import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -15,6 +22,7 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class FileOffsetsManager {
 
@@ -23,19 +31,48 @@ public class FileOffsetsManager {
     return ServiceManager.getService(FileOffsetsManager.class);
   }
 
-  private final Map<VirtualFile, LineOffsets> myLineOffsetsMap = new THashMap<>();
+  // weight of a cache entry is the number of ints in its line offsets tables, so the cache keeps about 16 MB of line offsets at most
+  private static final long MAX_CACHE_WEIGHT = 4 * 1024 * 1024;
+
+  // Lookups don't block each other; line offsets for a given file and stamp are loaded at most once even if requested concurrently
+  private final Cache<FileAndStamp, LineOffsets> myLineOffsetsCache = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_CACHE_WEIGHT)
+    .weigher((FileAndStamp key, LineOffsets offsets) -> offsets.myOriginalLineOffsets.length + offsets.myConvertedLineOffsets.length)
+    .recordStats()
+    .build();
+
+  // the stamp of the most recently loaded line offsets of each file, used to drop outdated entries without waiting for eviction
+  private final Map<VirtualFile, Long> myLoadedStamps = ContainerUtil.createConcurrentWeakMap();
+
+  private static final class FileAndStamp {
+    @NotNull private final VirtualFile myFile;
+    private final long myModificationStamp;
+
+    private FileAndStamp(@NotNull final VirtualFile file, final long modificationStamp) {
+      myFile = file;
+      myModificationStamp = modificationStamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof FileAndStamp && myFile.equals(((FileAndStamp)o).myFile) && myModificationStamp == ((FileAndStamp)o).myModificationStamp;
+    }
+
+    @Override
+    public int hashCode() {
+      return myFile.hashCode() * 31 + Long.hashCode(myModificationStamp);
+    }
+  }
 
   private static class LineOffsets {
-    private final long myFileModificationStamp; // todo stamp outside of this class
     private final int[] myOriginalLineOffsets;
     private final int[] myConvertedLineOffsets;
     private final boolean myLineOffsetsAreTheSame;
 
-    public LineOffsets(final long modificationStamp, @NotNull final int[] originalLineOffsets, @NotNull final int[] convertedLineOffsets) {
+    public LineOffsets(@NotNull final int[] originalLineOffsets, @NotNull final int[] convertedLineOffsets) {
       assert originalLineOffsets.length > 0 && convertedLineOffsets.length > 0 && originalLineOffsets.length == convertedLineOffsets.length
         : originalLineOffsets.length + " " + convertedLineOffsets.length;
 
-      myFileModificationStamp = modificationStamp;
       myOriginalLineOffsets = originalLineOffsets;
       myConvertedLineOffsets = convertedLineOffsets;
       myLineOffsetsAreTheSame =
@@ -50,6 +87,36 @@ public class FileOffsetsManager {
     return getCorrespondingOffset(offsets.myOriginalLineOffsets, offsets.myConvertedLineOffsets, originalOffset);
   }
 
+  /**
+   * Converts all {@code originalOffsets} using a single cache lookup.
+   */
+  @NotNull
+  public int[] getConvertedOffsets(@NotNull final VirtualFile file, @NotNull final int[] originalOffsets) {
+    final LineOffsets offsets = getLineOffsets(file);
+    if (offsets.myLineOffsetsAreTheSame) return originalOffsets.clone();
+
+    final int[] result = new int[originalOffsets.length];
+    for (int i = 0; i < originalOffsets.length; i++) {
+      result[i] = originalOffsets[i] <= 0
+                  ? originalOffsets[i]
+                  : getCorrespondingOffset(offsets.myOriginalLineOffsets, offsets.myConvertedLineOffsets, originalOffsets[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Hit/miss/load/eviction statistics of the line offsets cache.
+   */
+  @NotNull
+  public CacheStats getCacheStats() {
+    return myLineOffsetsCache.stats();
+  }
+
+  @TestOnly
+  long getCacheSize() {
+    return myLineOffsetsCache.size();
+  }
+
   public int getOriginalOffset(@NotNull final VirtualFile file, final int convertedOffset) {
     final LineOffsets offsets = getLineOffsets(file);
     if (offsets.myLineOffsetsAreTheSame) return convertedOffset;
@@ -69,14 +136,32 @@ public class FileOffsetsManager {
   }
 
   @NotNull
-  private synchronized LineOffsets getLineOffsets(@NotNull final VirtualFile file) {
-    LineOffsets offsets = myLineOffsetsMap.get(file);
-    if (offsets != null && file.getModificationStamp() == offsets.myFileModificationStamp) {
-      return offsets;
+  private LineOffsets getLineOffsets(@NotNull final VirtualFile file) {
+    final long stamp = file.getModificationStamp();
+    final FileAndStamp key = new FileAndStamp(file, stamp);
+
+    // a single get() per call, so that each lookup is counted once in getCacheStats()
+    final boolean[] loaded = new boolean[1];
+    final LineOffsets offsets;
+    try {
+      offsets = myLineOffsetsCache.get(key, () -> {
+        loaded[0] = true;
+        return loadLineOffsets(file);
+      });
+    }
+    catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      // e.g. ProcessCanceledException must get to the caller as is
+      ExceptionUtil.rethrowUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+
+    if (!loaded[0]) return offsets;
+
+    final Long previousStamp = myLoadedStamps.put(file, stamp);
+    if (previousStamp != null && previousStamp != stamp) {
+      myLineOffsetsCache.invalidate(new FileAndStamp(file, previousStamp));
     }
 
-    offsets = loadLineOffsets(file);
-    myLineOffsetsMap.put(file, offsets);
     return offsets;
   }
 
@@ -90,10 +175,10 @@ public class FileOffsetsManager {
       final Charset charset = LoadTextUtil.detectCharsetAndSetBOM(file, bytes, file.getFileType());
       final byte[] bom = file.getBOM();
       final int bomLength = bom == null ? 0 : bom.length;
-      return loadLineOffsets(bytes, charset, bomLength, file.getModificationStamp());
+      return loadLineOffsets(bytes, charset, bomLength);
     }
     catch (IOException e) {
-      return new LineOffsets(file.getModificationStamp(), new int[]{0}, new int[]{0});
+      return new LineOffsets(new int[]{0}, new int[]{0});
     }
   }
 
@@ -101,8 +186,7 @@ public class FileOffsetsManager {
   // similar to com.intellij.openapi.fileEditor.impl.LoadTextUtil.convertBytes()
   private static LineOffsets loadLineOffsets(@NotNull final byte[] bytes,
                                              @NotNull final Charset charset,
-                                             final int startOffset,
-                                             final long modificationStamp) {
+                                             final int startOffset) {
     ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, startOffset, bytes.length - startOffset);
 
     CharBuffer charBuffer;
@@ -113,12 +197,12 @@ public class FileOffsetsManager {
       // esoteric charsets can throw any kind of exception
       charBuffer = CharBuffer.wrap(ArrayUtil.EMPTY_CHAR_ARRAY);
     }
-    return loadLineOffsets(charBuffer, modificationStamp);
+    return loadLineOffsets(charBuffer);
   }
 
   @NotNull
   // similar to com.intellij.openapi.fileEditor.impl.LoadTextUtil.convertLineSeparators()
-  private static LineOffsets loadLineOffsets(@NotNull final CharBuffer buffer, final long modificationStamp) {
+  private static LineOffsets loadLineOffsets(@NotNull final CharBuffer buffer) {
     int dst = 0;
     char prev = ' ';
     int crlfCount = 0;
@@ -176,6 +260,6 @@ public class FileOffsetsManager {
       prev = c;
     }
 
-    return new LineOffsets(modificationStamp, originalLineOffsets.toArray(), convertedLineOffsets.toArray());
+    return new LineOffsets(originalLineOffsets.toArray(), convertedLineOffsets.toArray());
   }
 }
@@ -0,0 +1,110 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartHighlightRegion;
+import gnu.trove.TObjectIntHashMap;
+import org.dartlang.analysis.server.protocol.HighlightRegion;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable snapshot of highlight regions of a single file stored as parallel primitive arrays instead of an object per region.
+ * {@link DartHighlightRegion} instances are created on demand by {@link #get(int)}.
+ * Document changes produce a new snapshot, so readers never need a lock.
+ */
+final class PackedHighlightRegions extends AbstractList<DartHighlightRegion> implements RandomAccess {
+
+  private final int[] myOffsets;
+  private final int[] myLengths;
+  private final short[] myTypeIndices;
+  private final String[] myTypes; // shared by all snapshots derived from the same server notification
+  private final int mySize;
+
+  private PackedHighlightRegions(@NotNull final int[] offsets,
+                                 @NotNull final int[] lengths,
+                                 @NotNull final short[] typeIndices,
+                                 @NotNull final String[] types,
+                                 final int size) {
+    myOffsets = offsets;
+    myLengths = lengths;
+    myTypeIndices = typeIndices;
+    myTypes = types;
+    mySize = size;
+  }
+
+  @NotNull
+  static PackedHighlightRegions create(@NotNull final DartAnalysisServerService service,
+                                       @Nullable final VirtualFile file,
+                                       @NotNull final List<HighlightRegion> regions) {
+    final int[] offsets = new int[regions.size()];
+    final int[] lengths = new int[regions.size()];
+    final short[] typeIndices = new short[regions.size()];
+    final TObjectIntHashMap<String> typeToIndex = new TObjectIntHashMap<>();
+    int size = 0;
+
+    for (HighlightRegion region : regions) {
+      if (region.getLength() > 0) {
+        final int offset = service.getConvertedOffset(file, region.getOffset());
+        offsets[size] = offset;
+        lengths[size] = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
+
+        int typeIndex = typeToIndex.get(region.getType());
+        if (typeIndex == 0) {
+          // TObjectIntHashMap returns 0 for absent keys, so indices are stored shifted by one
+          typeIndex = typeToIndex.size() + 1;
+          typeToIndex.put(region.getType(), typeIndex);
+        }
+        typeIndices[size] = (short)(typeIndex - 1);
+        size++;
+      }
+    }
+
+    final String[] types = new String[typeToIndex.size()];
+    typeToIndex.forEachEntry((type, index) -> {
+      types[index - 1] = type.intern();
+      return true;
+    });
+
+    return new PackedHighlightRegions(offsets, lengths, typeIndices, types, size);
+  }
+
+  @Override
+  public DartHighlightRegion get(final int index) {
+    if (index < 0 || index >= mySize) throw new IndexOutOfBoundsException(index + " of " + mySize);
+    return new DartHighlightRegion(myOffsets[index], myLengths[index], myTypes[myTypeIndices[index]]);
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  /**
+   * Returns the snapshot that reflects the document change, see {@link DartRegionShiftUtil#shiftUpdatingTouched}.
+   */
+  @NotNull
+  PackedHighlightRegions afterDocumentChange(final int eventOffset, final int oldLength, final int newLength) {
+    if ((oldLength == 0 && newLength == 0) || mySize == 0) return this;
+
+    final int[] offsets = new int[mySize];
+    final int[] lengths = new int[mySize];
+    final short[] typeIndices = new short[mySize];
+    int size = 0;
+
+    for (int i = 0; i < mySize; i++) {
+      final long shifted = DartRegionShiftUtil.shiftUpdatingTouched(myOffsets[i], myLengths[i], eventOffset, oldLength, newLength);
+      if (shifted == DartRegionShiftUtil.DELETED) continue;
+
+      offsets[size] = DartRegionShiftUtil.offset(shifted);
+      lengths[size] = DartRegionShiftUtil.length(shifted);
+      typeIndices[size] = myTypeIndices[i];
+      size++;
+    }
+
+    return new PackedHighlightRegions(offsets, lengths, typeIndices, myTypes, size);
+  }
+}
@@ -0,0 +1,144 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.SmartList;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationRegion;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationTarget;
+import org.dartlang.analysis.server.protocol.NavigationRegion;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of navigation regions of a single file stored as parallel primitive arrays.
+ * Targets are kept in a single table per file, regions refer to them by index, so a target shared by many regions
+ * (e.g. a class referenced all over the file) exists only once.
+ * {@link DartNavigationRegion} instances are created on demand by {@link #get(int)}.
+ * Document changes produce a new snapshot, so readers never need a lock.
+ */
+final class PackedNavigationRegions extends AbstractList<DartNavigationRegion> implements RandomAccess {
+
+  private final int[] myOffsets;
+  private final int[] myLengths;
+  // targets of the i-th region are myTargetIndices[myTargetStarts[i]] .. myTargetIndices[myTargetStarts[i + 1] - 1]
+  private final int[] myTargetStarts;
+  private final int[] myTargetIndices;
+  private final DartNavigationTarget[] myTargets;
+  private final int mySize;
+
+  private PackedNavigationRegions(@NotNull final int[] offsets,
+                                  @NotNull final int[] lengths,
+                                  @NotNull final int[] targetStarts,
+                                  @NotNull final int[] targetIndices,
+                                  @NotNull final DartNavigationTarget[] targets,
+                                  final int size) {
+    myOffsets = offsets;
+    myLengths = lengths;
+    myTargetStarts = targetStarts;
+    myTargetIndices = targetIndices;
+    myTargets = targets;
+    mySize = size;
+  }
+
+  @NotNull
+  static PackedNavigationRegions create(@NotNull final DartAnalysisServerService service,
+                                        @Nullable final VirtualFile file,
+                                        @NotNull final List<NavigationRegion> regions) {
+    final int[] offsets = new int[regions.size()];
+    final int[] lengths = new int[regions.size()];
+    final int[] targetStarts = new int[regions.size() + 1];
+    int[] targetIndices = new int[regions.size()];
+    // the same NavigationTarget instance is referenced by all regions that point to it
+    final Map<NavigationTarget, Integer> targetToIndex = new IdentityHashMap<>();
+    final List<DartNavigationTarget> targets = new ArrayList<>();
+    int size = 0;
+    int targetIndicesCount = 0;
+
+    for (NavigationRegion region : regions) {
+      if (region.getLength() <= 0) continue;
+
+      final int offset = service.getConvertedOffset(file, region.getOffset());
+      offsets[size] = offset;
+      lengths[size] = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
+      targetStarts[size] = targetIndicesCount;
+
+      for (NavigationTarget target : region.getTargetObjects()) {
+        Integer targetIndex = targetToIndex.get(target);
+        if (targetIndex == null) {
+          targetIndex = targets.size();
+          targetToIndex.put(target, targetIndex);
+          targets.add(new DartNavigationTarget(target));
+        }
+
+        if (targetIndicesCount == targetIndices.length) {
+          targetIndices = Arrays.copyOf(targetIndices, targetIndices.length * 2 + 1);
+        }
+        targetIndices[targetIndicesCount++] = targetIndex;
+      }
+
+      size++;
+    }
+
+    targetStarts[size] = targetIndicesCount;
+    return new PackedNavigationRegions(offsets, lengths, targetStarts, targetIndices,
+                                       targets.toArray(new DartNavigationTarget[targets.size()]), size);
+  }
+
+  @Override
+  public DartNavigationRegion get(final int index) {
+    if (index < 0 || index >= mySize) throw new IndexOutOfBoundsException(index + " of " + mySize);
+
+    final SmartList<DartNavigationTarget> targets = new SmartList<>();
+    for (int i = myTargetStarts[index]; i < myTargetStarts[index + 1]; i++) {
+      targets.add(myTargets[myTargetIndices[i]]);
+    }
+    return new DartNavigationRegion(myOffsets[index], myLengths[index], targets);
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  /**
+   * Returns the snapshot that reflects the document change, see {@link DartRegionShiftUtil#shiftDeletingTouched}.
+   * Targets in the same file after the change are shifted as well.
+   */
+  @NotNull
+  PackedNavigationRegions afterDocumentChange(@NotNull final String filePath,
+                                              final int eventOffset,
+                                              final int oldLength,
+                                              final int newLength) {
+    if ((oldLength == 0 && newLength == 0) || mySize == 0) return this;
+
+    final DartNavigationTarget[] targets = new DartNavigationTarget[myTargets.length];
+    for (int i = 0; i < myTargets.length; i++) {
+      targets[i] = myTargets[i].shifted(filePath, eventOffset, oldLength, newLength);
+    }
+
+    final int[] offsets = new int[mySize];
+    final int[] lengths = new int[mySize];
+    final int[] targetStarts = new int[mySize + 1];
+    final int[] targetIndices = new int[myTargetStarts[mySize]];
+    int size = 0;
+    int targetIndicesCount = 0;
+
+    for (int i = 0; i < mySize; i++) {
+      final long shifted = DartRegionShiftUtil.shiftDeletingTouched(myOffsets[i], myLengths[i], eventOffset, oldLength, newLength);
+      if (shifted == DartRegionShiftUtil.DELETED) continue;
+
+      offsets[size] = DartRegionShiftUtil.offset(shifted);
+      lengths[size] = DartRegionShiftUtil.length(shifted);
+      targetStarts[size] = targetIndicesCount;
+      for (int j = myTargetStarts[i]; j < myTargetStarts[i + 1]; j++) {
+        targetIndices[targetIndicesCount++] = myTargetIndices[j];
+      }
+      size++;
+    }
+
+    targetStarts[size] = targetIndicesCount;
+    return new PackedNavigationRegions(offsets, lengths, targetStarts, targetIndices, targets, size);
+  }
+}
@@ -15,82 +15,217 @@
  */
 package com.jetbrains.lang.dart.coverage;
 
-import com.intellij.util.containers.hash.HashMap;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
+import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
+/**
+ * Hit counts merged per source, read from either the JSON produced by the {@code coverage:format_coverage} tool or an LCOV tracefile.
+ * Input is processed as a stream, hits are added directly to primitive per-source arrays indexed by line number, so memory use is
+ * proportional to the number of source lines, not to the size of the input.
+ */
 public class DartCoverageData {
-  @Nullable private List<DartFileCoverageData> coverage;
+  // marks lines that have no coverage information, as opposed to lines with 0 hits
+  static final int NO_DATA = -1;
+
+  private final Map<String, int[]> mySourceToLineHits = new THashMap<>();
+  private int myTotalLineSlots;
 
-  @Nullable
-  public List<DartFileCoverageData> getCoverage() {
-    return coverage;
+  /**
+   * Source URI (or file path for LCOV input) to hit counts indexed by line number, {@link #NO_DATA} for lines without information.
+   */
+  @NotNull
+  public Map<String, int[]> getLineHits() {
+    return Collections.unmodifiableMap(mySourceToLineHits);
   }
 
-  public void setCoverage(@Nullable List<DartFileCoverageData> coverage) {
-    this.coverage = coverage;
+  /**
+   * Number of ints held by all line arrays, for diagnostics.
+   */
+  public int getTotalLineSlots() {
+    return myTotalLineSlots;
   }
 
+  /**
+   * Format is detected by the first non-whitespace character: JSON data starts with '{'.
+   */
   @NotNull
-  public Map<String, SortedMap<Integer, Integer>> getMergedDartFileCoverageData() {
-    Map<String, SortedMap<Integer, Integer>> mergedCoverageData = new HashMap<>();
-    List<DartFileCoverageData> coverageData = getCoverage();
-    if (coverageData != null) {
-      for (DartFileCoverageData item : coverageData) {
-        String source = item.getSource();
-        if (source == null) {
-          continue;
+  public static DartCoverageData load(@NotNull final Reader reader) throws IOException {
+    final BufferedReader bufferedReader = new BufferedReader(reader);
+    int c;
+    do {
+      bufferedReader.mark(1);
+      c = bufferedReader.read();
+    }
+    while (c != -1 && Character.isWhitespace(c));
+    bufferedReader.reset();
+
+    final DartCoverageData data = new DartCoverageData();
+    if (c == '{') {
+      data.loadJson(bufferedReader);
+    }
+    else {
+      data.loadLcov(bufferedReader);
+    }
+    return data;
+  }
+
+  // {"type": "CodeCoverage", "coverage": [{"source": "package:foo/foo.dart", "hits": [line, count, "from-to", count, ...]}, ...]}
+  private void loadJson(@NotNull final Reader reader) throws IOException {
+    final JsonReader jsonReader = new JsonReader(reader);
+    try {
+      jsonReader.beginObject();
+      while (jsonReader.hasNext()) {
+        if ("coverage".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+          jsonReader.beginArray();
+          while (jsonReader.hasNext()) {
+            ProgressManager.checkCanceled();
+            readJsonFileCoverage(jsonReader);
+          }
+          jsonReader.endArray();
         }
-        if (!mergedCoverageData.containsKey(source)) {
-          mergedCoverageData.put(source, new TreeMap<>());
+        else {
+          jsonReader.skipValue();
         }
+      }
+      jsonReader.endObject();
+    }
+    catch (IllegalStateException | NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
 
-        SortedMap<Integer, Integer> fileData = mergedCoverageData.get(source);
-        List<Integer> hits = item.getHits();
-        if (hits == null) {
-          continue;
-        }
-        for (int i = 0; i < hits.size(); i += 2) {
-          Integer lineNumber = hits.get(i);
-          Integer hitCount = hits.get(i + 1);
-          if (!fileData.containsKey(lineNumber)) {
-            fileData.put(lineNumber, 0);
+  private void readJsonFileCoverage(@NotNull final JsonReader jsonReader) throws IOException {
+    if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+      jsonReader.skipValue();
+      return;
+    }
+
+    // "source" usually goes before "hits", otherwise hits are collected into a temporary array
+    String source = null;
+    int[] pendingHits = null;
+    int pendingHitsCount = 0;
+
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      final String name = jsonReader.nextName();
+      if ("source".equals(name) && jsonReader.peek() == JsonToken.STRING) {
+        source = jsonReader.nextString();
+      }
+      else if ("hits".equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+          final int fromLine;
+          final int toLine;
+          if (jsonReader.peek() == JsonToken.STRING) {
+            final String range = jsonReader.nextString();
+            final int dash = range.indexOf('-');
+            fromLine = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+            toLine = dash < 0 ? fromLine : Integer.parseInt(range.substring(dash + 1));
+          }
+          else {
+            fromLine = toLine = jsonReader.nextInt();
           }
+          final int hitCount = jsonReader.nextInt();
 
-          fileData.put(lineNumber, fileData.get(lineNumber) + hitCount);
+          for (int line = fromLine; line <= toLine; line++) {
+            if (source != null) {
+              addHits(source, line, hitCount);
+            }
+            else {
+              if (pendingHits == null) {
+                pendingHits = new int[16];
+              }
+              else if (pendingHitsCount == pendingHits.length) {
+                pendingHits = Arrays.copyOf(pendingHits, pendingHits.length * 2);
+              }
+              pendingHits[pendingHitsCount++] = line;
+              pendingHits[pendingHitsCount++] = hitCount;
+            }
+          }
         }
+        jsonReader.endArray();
+      }
+      else {
+        jsonReader.skipValue();
       }
     }
+    jsonReader.endObject();
 
-    return mergedCoverageData;
+    if (source != null) {
+      getOrCreateLineHits(source, 0);
+      for (int i = 0; i < pendingHitsCount; i += 2) {
+        addHits(source, pendingHits[i], pendingHits[i + 1]);
+      }
+    }
   }
-}
 
+  // SF:<source path>, DA:<line>,<hits>[,<checksum>], end_of_record; other records are ignored
+  private void loadLcov(@NotNull final BufferedReader reader) throws IOException {
+    String source = null;
+    String line;
+    int lineCount = 0;
+    while ((line = reader.readLine()) != null) {
+      if (++lineCount % 1000 == 0) {
+        ProgressManager.checkCanceled();
+      }
 
-class DartFileCoverageData {
-  @Nullable private String source;
-  @Nullable private List<Integer> hits;
+      if (line.startsWith("SF:")) {
+        source = line.substring("SF:".length()).trim();
+        getOrCreateLineHits(source, 0);
+      }
+      else if (line.startsWith("DA:") && source != null) {
+        final int firstComma = line.indexOf(',');
+        if (firstComma < 0) continue;
+        int secondComma = line.indexOf(',', firstComma + 1);
+        if (secondComma < 0) secondComma = line.length();
 
-  @Nullable
-  public String getSource() {
-    return source;
+        final int lineNumber = StringUtil.parseInt(line.substring("DA:".length(), firstComma).trim(), -1);
+        final int hitCount = StringUtil.parseInt(line.substring(firstComma + 1, secondComma).trim(), -1);
+        if (lineNumber >= 0 && hitCount >= 0) {
+          addHits(source, lineNumber, hitCount);
+        }
+      }
+      else if (line.equals("end_of_record")) {
+        source = null;
+      }
+    }
   }
 
-  public void setSource(@Nullable String source) {
-    this.source = source;
-  }
+  private void addHits(@NotNull final String source, final int line, final int hitCount) {
+    if (line < 0) return;
 
-  @Nullable
-  public List<Integer> getHits() {
-    return hits;
+    final int[] lineHits = getOrCreateLineHits(source, line + 1);
+    lineHits[line] = lineHits[line] == NO_DATA ? hitCount : lineHits[line] + hitCount;
   }
 
-  public void setHits(@Nullable List<Integer> hits) {
-    this.hits = hits;
+  @NotNull
+  private int[] getOrCreateLineHits(@NotNull final String source, final int minSize) {
+    int[] lineHits = mySourceToLineHits.get(source);
+    if (lineHits == null) {
+      lineHits = new int[Math.max(minSize, 16)];
+      Arrays.fill(lineHits, NO_DATA);
+      myTotalLineSlots += lineHits.length;
+      mySourceToLineHits.put(source, lineHits);
+    }
+    else if (lineHits.length < minSize) {
+      final int oldLength = lineHits.length;
+      lineHits = Arrays.copyOf(lineHits, Math.max(minSize, oldLength * 2));
+      Arrays.fill(lineHits, oldLength, lineHits.length, NO_DATA);
+      myTotalLineSlots += lineHits.length - oldLength;
+      mySourceToLineHits.put(source, lineHits);
+    }
+    return lineHits;
   }
-}
\ No newline at end of file
+}
@@ -15,7 +15,6 @@
  */
 package com.jetbrains.lang.dart.coverage;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.intellij.coverage.CoverageEngine;
 import com.intellij.coverage.CoverageRunner;
@@ -25,6 +24,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.Ref;
 import com.intellij.rt.coverage.data.ClassData;
 import com.intellij.rt.coverage.data.LineData;
@@ -33,12 +33,11 @@ import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Map;
-import java.util.SortedMap;
 
 public class DartCoverageRunner extends CoverageRunner {
   private static final String ID = "DartCoverageRunner";
@@ -98,13 +97,15 @@ public class DartCoverageRunner extends CoverageRunner {
     final ProjectData projectData = new ProjectData();
 
     try {
-      DartCoverageData data = new Gson().fromJson(new BufferedReader(new FileReader(sessionDataFile)), DartCoverageData.class);
-      if (data == null) {
-        LOG.warn("Coverage file does not contain valid data.");
-        return null;
+      final long start = System.currentTimeMillis();
+      final DartCoverageData data;
+      try (Reader reader = new FileReader(sessionDataFile)) {
+        data = DartCoverageData.load(reader);
       }
+      LOG.info("Coverage data for " + data.getLineHits().size() + " sources loaded in " + (System.currentTimeMillis() - start) +
+               " ms, line hits take " + data.getTotalLineSlots() * 4L / 1024 + " KB");
 
-      for (Map.Entry<String, SortedMap<Integer, Integer>> entry : data.getMergedDartFileCoverageData().entrySet()) {
+      for (Map.Entry<String, int[]> entry : data.getLineHits().entrySet()) {
         ProgressManager.checkCanceled();
 
         String filePath = getFileForUri(project, contextId, entry.getKey());
@@ -112,22 +113,11 @@ public class DartCoverageRunner extends CoverageRunner {
           // File is not found.
           continue;
         }
-        SortedMap<Integer, Integer> lineHits = entry.getValue();
         ClassData classData = projectData.getOrCreateClassData(filePath);
-        if (lineHits.size() == 0) {
-          classData.setLines(new LineData[1]);
-          continue;
-        }
-        LineData[] lines = new LineData[lineHits.lastKey() + 1];
-        for (Map.Entry<Integer, Integer> hit : lineHits.entrySet()) {
-          LineData lineData = new LineData(hit.getKey(), null);
-          lineData.setHits(hit.getValue());
-          lines[hit.getKey()] = lineData;
-        }
-        classData.setLines(lines);
+        classData.setLines(createLines(entry.getValue()));
       }
     }
-    catch (FileNotFoundException | JsonSyntaxException e) {
+    catch (IOException | JsonSyntaxException e) {
       LOG.warn(e);
     }
     finally {
@@ -137,13 +127,36 @@ public class DartCoverageRunner extends CoverageRunner {
     return projectData;
   }
 
+  @NotNull
+  static LineData[] createLines(@NotNull final int[] lineHits) {
+    int lastLine = lineHits.length - 1;
+    while (lastLine >= 0 && lineHits[lastLine] == DartCoverageData.NO_DATA) {
+      lastLine--;
+    }
+
+    final LineData[] lines = new LineData[Math.max(lastLine + 1, 1)];
+    for (int line = 0; line <= lastLine; line++) {
+      if (lineHits[line] == DartCoverageData.NO_DATA) continue;
+
+      final LineData lineData = new LineData(line, null);
+      lineData.setHits(lineHits[line]);
+      lines[line] = lineData;
+    }
+    return lines;
+  }
+
   @Nullable
-  private static String getFileForUri(@NotNull final Project project, @NotNull final String contextId, @NotNull final String uri) {
+  static String getFileForUri(@NotNull final Project project, @NotNull final String contextId, @NotNull final String uri) {
     if (uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/")) {
       // dart:_builtin or dart:core-patch/core_patch.dart
       return null;
     }
 
+    if (new File(uri).isAbsolute()) {
+      // LCOV input refers to sources by path
+      return FileUtil.toSystemIndependentName(uri);
+    }
+
     return DartAnalysisServerService.getInstance(project).execution_mapUri(contextId, null, uri);
   }
 
@@ -3,6 +3,7 @@ package com.jetbrains.lang.dart.folding;
 import com.intellij.codeInsight.folding.CodeFoldingSettings;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.folding.CustomFoldingBuilder;
+import com.intellij.lang.folding.FoldingBuilderEx;
 import com.intellij.lang.folding.FoldingDescriptor;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.DumbAware;
@@ -10,6 +11,7 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.UnfairTextRange;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
 import com.intellij.psi.PsiWhiteSpace;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.util.PsiTreeUtil;
@@ -20,33 +22,93 @@ import com.jetbrains.lang.dart.psi.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
-public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAware {
+public class DartFoldingBuilder extends FoldingBuilderEx implements DumbAware {
 
   private static final String SMILEY = "<~>";
 
-  protected void buildLanguageFoldRegions(@NotNull final List<FoldingDescriptor> descriptors,
-                                          @NotNull final PsiElement root,
-                                          @NotNull final Document document,
-                                          final boolean quick) {
+  // Quick pass (done when an editor is being opened) for files longer than this doesn't look inside function bodies.
+  // Regions of function bodies themselves are computed from lazy-parseable blocks, their contents are not parsed.
+  // Regions inside function bodies appear when the full pass runs in background.
+  static final int QUICK_PASS_FULL_PSI_MAX_LENGTH = 64 * 1024;
+
+  private static final Class[] ELEMENT_CLASSES_TO_FOLD = new Class[]{
+    DartComponent.class,
+    DartTypeArguments.class,
+    PsiComment.class,
+    DartStringLiteralExpression.class,
+    DartMapLiteralExpression.class,
+    DartNewExpression.class};
+
+  // Custom regions (like //region ... //endregion) are looked for by a walk over the whole tree, which would parse all function bodies,
+  // so the quick pass for large files doesn't use this builder and custom regions appear with the full pass.
+  private final CustomFoldingBuilder myCustomFoldingBuilder = new CustomFoldingBuilder() {
+    @Override
+    protected void buildLanguageFoldRegions(@NotNull final List<FoldingDescriptor> descriptors,
+                                            @NotNull final PsiElement root,
+                                            @NotNull final Document document,
+                                            final boolean quick) {
+      DartFoldingBuilder.this.buildLanguageFoldRegions(descriptors, root, document, quick);
+    }
+
+    @Override
+    protected String getLanguagePlaceholderText(@NotNull final ASTNode node, @NotNull final TextRange range) {
+      return DartFoldingBuilder.this.getLanguagePlaceholderText(node, range);
+    }
+
+    @Override
+    protected boolean isRegionCollapsedByDefault(@NotNull final ASTNode node) {
+      return DartFoldingBuilder.this.isRegionCollapsedByDefault(node);
+    }
+  };
+
+  @NotNull
+  @Override
+  public FoldingDescriptor[] buildFoldRegions(@NotNull final PsiElement root, @NotNull final Document document, final boolean quick) {
+    if (isQuickPassForLargeFile(document, quick)) {
+      final List<FoldingDescriptor> descriptors = new ArrayList<>();
+      buildLanguageFoldRegions(descriptors, root, document, true);
+      return descriptors.toArray(FoldingDescriptor.EMPTY);
+    }
+    return myCustomFoldingBuilder.buildFoldRegions(root, document, quick);
+  }
+
+  @Override
+  public String getPlaceholderText(@NotNull final ASTNode node, @NotNull final TextRange range) {
+    return myCustomFoldingBuilder.getPlaceholderText(node, range);
+  }
+
+  @Override
+  public String getPlaceholderText(@NotNull final ASTNode node) {
+    return myCustomFoldingBuilder.getPlaceholderText(node);
+  }
+
+  @Override
+  public boolean isCollapsedByDefault(@NotNull final ASTNode node) {
+    return myCustomFoldingBuilder.isCollapsedByDefault(node);
+  }
+
+  private static boolean isQuickPassForLargeFile(@NotNull final Document document, final boolean quick) {
+    return quick && document.getTextLength() > QUICK_PASS_FULL_PSI_MAX_LENGTH;
+  }
+
+  private void buildLanguageFoldRegions(@NotNull final List<FoldingDescriptor> descriptors,
+                                        @NotNull final PsiElement root,
+                                        @NotNull final Document document,
+                                        final boolean quick) {
     if (!(root instanceof DartFile)) return;
 
     final DartFile dartFile = (DartFile)root;
     final TextRange fileHeaderRange = foldFileHeader(descriptors, dartFile, document); // 1. File header
     foldConsequentStatements(descriptors, dartFile, DartImportOrExportStatement.class);// 2. Import and export statements
     foldConsequentStatements(descriptors, dartFile, DartPartStatement.class);          // 3. Part statements
-    final Collection<PsiElement> psiElements = PsiTreeUtil.collectElementsOfType(
-      root,
-      new Class[]{
-        DartComponent.class,
-        DartTypeArguments.class,
-        PsiComment.class,
-        DartStringLiteralExpression.class,
-        DartMapLiteralExpression.class,
-        DartNewExpression.class});
+    final Collection<PsiElement> psiElements = isQuickPassForLargeFile(document, quick)
+                                               ? collectElementsOutsideFunctionBodies(dartFile)
+                                               : PsiTreeUtil.collectElementsOfType(root, ELEMENT_CLASSES_TO_FOLD);
     foldComments(descriptors, psiElements, fileHeaderRange);                           // 4. Comments and comment sequences
     foldClassBodies(descriptors, dartFile);                                            // 5. Class body
     foldFunctionBodies(descriptors, psiElements);                                      // 6. Function body
@@ -56,7 +118,7 @@ public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAwar
     foldNewDartExpressions(descriptors, psiElements);                                  // 10. Constructor invocations
   }
 
-  protected String getLanguagePlaceholderText(@NotNull final ASTNode node, @NotNull final TextRange range) {
+  private String getLanguagePlaceholderText(@NotNull final ASTNode node, @NotNull final TextRange range) {
     final IElementType elementType = node.getElementType();
     final PsiElement psiElement = node.getPsi();
 
@@ -81,7 +143,7 @@ public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAwar
     return "...";
   }
 
-  protected boolean isRegionCollapsedByDefault(@NotNull final ASTNode node) {
+  private boolean isRegionCollapsedByDefault(@NotNull final ASTNode node) {
     final IElementType elementType = node.getElementType();
     final PsiElement psiElement = node.getPsi();
     final CodeFoldingSettings settings = CodeFoldingSettings.getInstance();
@@ -103,6 +165,30 @@ public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAwar
     return false;
   }
 
+  /**
+   * Same as {@code PsiTreeUtil.collectElementsOfType(dartFile, ELEMENT_CLASSES_TO_FOLD)} but doesn't descend into lazy-parseable
+   * blocks, so that function bodies are not parsed.
+   */
+  @NotNull
+  private static Collection<PsiElement> collectElementsOutsideFunctionBodies(@NotNull final DartFile dartFile) {
+    final List<PsiElement> result = new ArrayList<>();
+    dartFile.accept(new PsiRecursiveElementWalkingVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        if (element instanceof DartLazyParseableBlock) return;
+
+        for (Class aClass : ELEMENT_CLASSES_TO_FOLD) {
+          if (aClass.isInstance(element)) {
+            result.add(element);
+            break;
+          }
+        }
+        super.visitElement(element);
+      }
+    });
+    return result;
+  }
+
   @Nullable
   private static TextRange foldFileHeader(@NotNull final List<FoldingDescriptor> descriptors,
                                           @NotNull final DartFile dartFile,
@@ -30,6 +30,7 @@ import com.intellij.ui.LayeredIcon;
 import com.intellij.ui.RowIcon;
 import com.intellij.util.PlatformIcons;
 import com.intellij.util.ProcessingContext;
+import com.intellij.util.containers.ContainerUtil;
 import com.jetbrains.lang.dart.DartLanguage;
 import com.jetbrains.lang.dart.DartYamlFileTypeFactory;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
@@ -45,12 +46,15 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.util.List;
+import java.util.Map;
 
 import static com.intellij.patterns.PlatformPatterns.psiElement;
 import static com.intellij.patterns.PlatformPatterns.psiFile;
 import static com.intellij.patterns.StandardPatterns.or;
 
 public class DartServerCompletionContributor extends CompletionContributor {
+  private static final Map<String, Icon> ourIcons = ContainerUtil.newConcurrentMap();
+
   public DartServerCompletionContributor() {
     extend(CompletionType.BASIC,
            or(psiElement().withLanguage(DartLanguage.INSTANCE),
@@ -107,6 +111,9 @@ public class DartServerCompletionContributor extends CompletionContributor {
                    }
                  }
 
+                 // results arrive in batches and may be large, don't create lookup elements that would be filtered out anyway
+                 if (!prefixMatches(updatedResultSet.getPrefixMatcher(), suggestion.getCompletion())) return;
+
                  final LookupElement lookupElement = createLookupElement(project, suggestion);
                  updatedResultSet.addElement(lookupElement);
                });
@@ -218,6 +225,46 @@ public class DartServerCompletionContributor extends CompletionContributor {
     }
   }
 
+  /**
+   * Same check as the one the result set does for the lookup element created by {@link #createLookupElement}, including its
+   * additional lookup string.
+   */
+  private static boolean prefixMatches(@NotNull final PrefixMatcher prefixMatcher, @NotNull final String lookupString) {
+    if (prefixMatcher.prefixMatches(lookupString)) return true;
+
+    final String afterDot = getLookupStringAfterDot(lookupString);
+    return afterDot != null && prefixMatcher.prefixMatches(afterDot);
+  }
+
+  @Nullable
+  private static String getLookupStringAfterDot(@NotNull final String lookupString) {
+    final int dotIndex = lookupString.indexOf('.');
+    if (dotIndex > 0 && dotIndex < lookupString.length() - 1 &&
+        StringUtil.isJavaIdentifier(lookupString.substring(0, dotIndex)) &&
+        StringUtil.isJavaIdentifier(lookupString.substring(dotIndex + 1))) {
+      return lookupString.substring(dotIndex + 1);
+    }
+    return null;
+  }
+
+  @Nullable
+  private static Icon getIcon(@NotNull final Element element) {
+    // the same few composite icons are used by thousands of suggestions
+    final String key = element.getKind() + '|' + element.isAbstract() + '|' + element.isTopLevelOrStatic() + '|' +
+                       element.isPrivate() + '|' + element.isFinal() + '|' + element.isConst();
+    final Icon cached = ourIcons.get(key);
+    if (cached != null) return cached;
+
+    Icon icon = getBaseImage(element);
+    if (icon == null) return null;
+
+    icon = applyVisibility(icon, element.isPrivate());
+    icon = applyOverlay(icon, element.isFinal(), AllIcons.Nodes.FinalMark);
+    icon = applyOverlay(icon, element.isConst(), AllIcons.Nodes.FinalMark);
+    ourIcons.put(key, icon);
+    return icon;
+  }
+
   private static Icon applyOverlay(Icon base, boolean condition, Icon overlay) {
     if (condition) {
       return new LayeredIcon(base, overlay);
@@ -246,12 +293,10 @@ public class DartServerCompletionContributor extends CompletionContributor {
       lookup = lookup.bold();
     }
 
-    final int dotIndex = lookupString.indexOf('.');
-    if (dotIndex > 0 && dotIndex < lookupString.length() - 1 &&
-        StringUtil.isJavaIdentifier(lookupString.substring(0, dotIndex)) &&
-        StringUtil.isJavaIdentifier(lookupString.substring(dotIndex + 1))) {
+    final String lookupStringAfterDot = getLookupStringAfterDot(lookupString);
+    if (lookupStringAfterDot != null) {
       // 'path.Context' should match 'Conte' prefix
-      lookup = lookup.withLookupString(lookupString.substring(dotIndex + 1));
+      lookup = lookup.withLookupString(lookupStringAfterDot);
     }
 
     boolean shouldSetSelection = true;
@@ -276,11 +321,8 @@ public class DartServerCompletionContributor extends CompletionContributor {
         lookup = lookup.withTypeText(returnType, true);
       }
       // icon
-      Icon icon = getBaseImage(element);
+      final Icon icon = getIcon(element);
       if (icon != null) {
-        icon = applyVisibility(icon, element.isPrivate());
-        icon = applyOverlay(icon, element.isFinal(), AllIcons.Nodes.FinalMark);
-        icon = applyOverlay(icon, element.isConst(), AllIcons.Nodes.FinalMark);
         lookup = lookup.withIcon(icon);
       }
       // Prepare for typing arguments, if any.
@@ -23,8 +23,10 @@ import com.intellij.notification.Notifications;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.jetbrains.lang.dart.DartBundle;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.psi.DartClassResolveCache;
 import org.dartlang.analysis.server.protocol.RequestError;
 
 public class AnalysisServerDiagnosticsAction extends DumbAwareAction {
@@ -42,6 +44,15 @@ public class AnalysisServerDiagnosticsAction extends DumbAwareAction {
     // Get the current analysis server.
     DartAnalysisServerService server = DartAnalysisServerService.getInstance(project);
 
+    // Show the client side statistics, the server side ones are on the status page.
+    Notifications.Bus.notify(new Notification(
+      GROUP_DISPLAY_ID,
+      DartBundle.message("analysis.server.show.diagnostics.statistics"),
+      StringUtil.escapeXml(server.getResultsCacheStatistics() + "\n" + server.getEdtUpdatesStatistics() + "\n" +
+                           server.getNotificationStatistics() + "\n" +
+                           DartClassResolveCache.getInstance(project).getStatistics()).replace("\n", "<br>"),
+      NotificationType.INFORMATION), project);
+
     // Ask it for the diagnostics port.
     server.diagnostic_getServerPort(new GetServerPortConsumer() {
       @Override
@@ -24,14 +24,30 @@ public class DartProblem {
 
   private String mySystemIndependentPath;
 
-  @Nullable private VirtualFile myFile;
-  @Nullable private VirtualFile myPackageRoot;
-  @Nullable private VirtualFile myContentRoot;
-  private String myPresentableLocationWithoutLineNumber;
+  // shared by all problems in the same file, calculated once for all of them
+  @NotNull private final Location myLocation;
+
+  private static class Location {
+    @Nullable private VirtualFile myFile;
+    @Nullable private VirtualFile myPackageRoot;
+    @Nullable private VirtualFile myContentRoot;
+    private String myPresentableLocationWithoutLineNumber;
+  }
 
   public DartProblem(@NotNull final Project project, @NotNull final AnalysisError error) {
     myProject = project;
     myAnalysisError = error;
+    myLocation = new Location();
+  }
+
+  /**
+   * @param problemInSameFile a problem in the same file, its location info is reused
+   */
+  DartProblem(@NotNull final Project project, @NotNull final AnalysisError error, @NotNull final DartProblem problemInSameFile) {
+    myProject = project;
+    myAnalysisError = error;
+    mySystemIndependentPath = problemInSameFile.getSystemIndependentPath();
+    myLocation = problemInSameFile.myLocation;
   }
 
   @NotNull
@@ -71,7 +87,7 @@ public class DartProblem {
   }
 
   private void ensureInitialized() {
-    if (myPresentableLocationWithoutLineNumber != null) return;
+    if (myLocation.myPresentableLocationWithoutLineNumber != null) return;
 
     // temporary final vars guarantee that vars are initialized before this method exits
     final VirtualFile file;
@@ -116,11 +132,11 @@ public class DartProblem {
       }
     }
 
-    myFile = file;
-    myPackageRoot = packageRoot;
-    myContentRoot = contentRoot;
-    myPresentableLocationWithoutLineNumber = dartPackageName == null ? presentableFilePath
-                                                                     : ("[" + dartPackageName + "] " + presentableFilePath);
+    myLocation.myFile = file;
+    myLocation.myPackageRoot = packageRoot;
+    myLocation.myContentRoot = contentRoot;
+    myLocation.myPresentableLocationWithoutLineNumber = dartPackageName == null ? presentableFilePath
+                                                                               : ("[" + dartPackageName + "] " + presentableFilePath);
   }
 
 
@@ -132,7 +148,7 @@ public class DartProblem {
   @NotNull
   public String getPresentableLocationWithoutLineNumber() {
     ensureInitialized();
-    return myPresentableLocationWithoutLineNumber;
+    return myLocation.myPresentableLocationWithoutLineNumber;
   }
 
   @NotNull
@@ -143,18 +159,18 @@ public class DartProblem {
   @Nullable
   public VirtualFile getFile() {
     ensureInitialized();
-    return myFile;
+    return myLocation.myFile;
   }
 
   @Nullable
   public VirtualFile getPackageRoot() {
     ensureInitialized();
-    return myPackageRoot;
+    return myLocation.myPackageRoot;
   }
 
   @Nullable
   public VirtualFile getContentRoot() {
     ensureInitialized();
-    return myContentRoot;
+    return myLocation.myContentRoot;
   }
 }
@@ -4,6 +4,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.jetbrains.lang.dart.util.DartBuildFileUtil;
 import com.jetbrains.lang.dart.util.PubspecYamlUtil;
@@ -131,7 +132,8 @@ public class DartProblemsPresentationHelper {
 
       VirtualFile parent = myCurrentFile.getParent();
       VirtualFile child = problem.getFile();
-      if (child != null && parent != null && !child.getPath().startsWith(parent.getPath() + "/")) {
+      // walks up the parents instead of building path strings, this is called for each row whenever the table is re-filtered
+      if (child != null && parent != null && !VfsUtilCore.isAncestor(parent, child, true)) {
         return false;
       }
     }
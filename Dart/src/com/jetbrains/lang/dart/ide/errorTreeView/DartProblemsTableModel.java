@@ -10,6 +10,8 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ui.ColumnInfo;
 import com.intellij.util.ui.ListTableModel;
 import com.jetbrains.lang.dart.ide.annotator.DartAnnotator;
+import gnu.trove.THashSet;
+import gnu.trove.TObjectIntHashMap;
 import icons.DartIcons;
 import org.dartlang.analysis.server.protocol.AnalysisError;
 import org.dartlang.analysis.server.protocol.AnalysisErrorSeverity;
@@ -68,6 +70,8 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
   // Kind of hack to keep a reference to the live collection used in a super class, but it allows to improve performance greatly.
   // Having it in hand we can do bulk rows removal with a single fireTableRowsDeleted() call afterwards
   private final List<DartProblem> myItems;
+  // Number of rows for each file, lets skip scanning the table for files that have no rows, which is the case for most updates
+  private final TObjectIntHashMap<String> myFilePathToRowCount = new TObjectIntHashMap<>();
 
   private RowSorter.SortKey mySortKey = new RowSorter.SortKey(1, SortOrder.ASCENDING);
 
@@ -160,14 +164,20 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
   public void removeRows(final int firstRow, final int lastRow) {
     assert lastRow >= firstRow;
 
-    for (int i = lastRow; i >= firstRow; i--) {
-      final DartProblem removed = myItems.remove(i);
-
+    final List<DartProblem> removedRows = myItems.subList(firstRow, lastRow + 1);
+    for (DartProblem removed : removedRows) {
       if (AnalysisErrorSeverity.ERROR.equals(removed.getSeverity())) myErrorCount--;
       if (AnalysisErrorSeverity.WARNING.equals(removed.getSeverity())) myWarningCount--;
       if (AnalysisErrorSeverity.INFO.equals(removed.getSeverity())) myHintCount--;
       updateProblemsCountAfterFilter(removed, false);
+
+      final String filePath = removed.getSystemIndependentPath();
+      if (myFilePathToRowCount.adjustOrPutValue(filePath, -1, 0) <= 0) {
+        myFilePathToRowCount.remove(filePath);
+      }
     }
+    // a single arraycopy instead of one per removed row
+    removedRows.clear();
 
     fireTableRowsDeleted(firstRow, lastRow);
   }
@@ -178,6 +188,7 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
       myItems.clear();
       fireTableRowsDeleted(0, rowCount - 1);
     }
+    myFilePathToRowCount.clear();
 
     myErrorCount = 0;
     myWarningCount = 0;
@@ -198,11 +209,20 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
     return addErrorsAndReturnReplacementForSelection(filePathToErrors, selectedProblemRemoved ? selectedProblem : null);
   }
 
-  private boolean removeRowsForFilesInSet(@NotNull final Set<String> filePaths, @Nullable final DartProblem selectedProblem) {
+  private boolean removeRowsForFilesInSet(@NotNull final Set<String> allFilePaths, @Nullable final DartProblem selectedProblem) {
     // Looks for regions in table items that should be removed and removes them.
     // For performance reasons we try to call removeRows() as rare as possible, that means with regions as big as possible.
     // Logic is based on the fact that all errors for each particular file are stored continuously in the myItems model
 
+    final Set<String> filePaths = new THashSet<>();
+    for (String filePath : allFilePaths) {
+      if (myFilePathToRowCount.containsKey(filePath)) {
+        filePaths.add(filePath);
+      }
+    }
+
+    if (filePaths.isEmpty()) return false;
+
     boolean selectedProblemRemoved = false;
 
     int matchedFilesCount = 0;
@@ -272,19 +292,28 @@ class DartProblemsTableModel extends ListTableModel<DartProblem> {
 
     final List<DartProblem> problemsToAdd = new ArrayList<>();
     for (Map.Entry<String, List<AnalysisError>> entry : filePathToErrors.entrySet()) {
+      if (entry.getValue().isEmpty()) continue;
+
       final String filePath = entry.getKey();
       final VirtualFile vFile = LocalFileSystem.getInstance().findFileByPath(filePath);
       final List<AnalysisError> errors = vFile != null && ProjectFileIndex.getInstance(myProject).isInContent(vFile)
                                          ? entry.getValue()
                                          : AnalysisError.EMPTY_LIST;
 
+      DartProblem firstProblemInFile = null;
       for (AnalysisError analysisError : errors) {
         if (DartAnnotator.shouldIgnoreMessageFromDartAnalyzer(filePath, analysisError.getLocation().getFile())) {
           continue;
         }
 
-        final DartProblem problem = new DartProblem(myProject, analysisError);
+        final DartProblem problem = firstProblemInFile == null
+                                    ? new DartProblem(myProject, analysisError)
+                                    : new DartProblem(myProject, analysisError, firstProblemInFile);
+        if (firstProblemInFile == null) {
+          firstProblemInFile = problem;
+        }
         problemsToAdd.add(problem);
+        myFilePathToRowCount.adjustOrPutValue(problem.getSystemIndependentPath(), 1, 1);
 
         if (oldSelectedProblem != null &&
             lookSimilar(problem, oldSelectedProblem) &&
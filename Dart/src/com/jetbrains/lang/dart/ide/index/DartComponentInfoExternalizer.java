@@ -5,20 +5,22 @@ import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.IOUtil;
 import com.jetbrains.lang.dart.DartComponentType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+/**
+ * A component is written as a single varint that holds both the component type and the presence of the library name, followed by
+ * the library name if any. Don't forget to increment {@link DartIndexUtil#INDEX_VERSION} when changing the format.
+ */
 public class DartComponentInfoExternalizer implements DataExternalizer<DartComponentInfo> {
 
   @Override
   public void save(@NotNull final DataOutput out, @NotNull final DartComponentInfo componentInfo) throws IOException {
-    final DartComponentType dartComponentType = componentInfo.getComponentType();
-    final int key = dartComponentType == null ? -1 : dartComponentType.getKey();
-    DataInputOutputUtil.writeINT(out, key);
     final String libraryName = componentInfo.getLibraryName();
-    out.writeBoolean(libraryName != null);
+    DataInputOutputUtil.writeINT(out, packHeader(componentInfo.getComponentType(), libraryName == null ? 0 : 1));
     if (libraryName != null) {
       IOUtil.writeUTF(out, libraryName);
     }
@@ -26,9 +28,30 @@ public class DartComponentInfoExternalizer implements DataExternalizer<DartCompo
 
   @Override
   public DartComponentInfo read(@NotNull DataInput in) throws IOException {
-    final int componentTypeKey = DataInputOutputUtil.readINT(in);
-    final boolean hasLibraryName = in.readBoolean();
-    final String libraryName = hasLibraryName ? IOUtil.readUTF(in) : null;
-    return new DartComponentInfo(DartComponentType.valueOf(componentTypeKey), libraryName);
+    final int header = DataInputOutputUtil.readINT(in);
+    final String libraryName = unpackLibraryIndex(header) != 0 ? IOUtil.readUTF(in) : null;
+    return new DartComponentInfo(unpackComponentType(header), libraryName);
+  }
+
+  /**
+   * The low bits of a header hold the type key, the rest is the library index. Type key is shifted by one so that a {@code null}
+   * type is stored as 0, and the number of bits is fixed so that the encoding doesn't depend on the number of component types.
+   * Changing it, or adding component types that don't fit into it, requires incrementing {@link DartIndexUtil#INDEX_VERSION}.
+   */
+  static final int TYPE_KEY_BITS = 4;
+  private static final int TYPE_KEY_MASK = (1 << TYPE_KEY_BITS) - 1;
+
+  static int packHeader(@Nullable final DartComponentType componentType, final int libraryIndex) {
+    final int typeKey = componentType == null ? 0 : componentType.getKey() + 1;
+    return typeKey | libraryIndex << TYPE_KEY_BITS;
+  }
+
+  @Nullable
+  static DartComponentType unpackComponentType(final int header) {
+    return DartComponentType.valueOf((header & TYPE_KEY_MASK) - 1);
+  }
+
+  static int unpackLibraryIndex(final int header) {
+    return header >>> TYPE_KEY_BITS;
   }
 }
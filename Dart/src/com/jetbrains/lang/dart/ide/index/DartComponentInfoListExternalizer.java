@@ -3,7 +3,7 @@ package com.jetbrains.lang.dart.ide.index;
 import com.intellij.util.io.DataExternalizer;
 import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.IOUtil;
-import com.jetbrains.lang.dart.DartComponentType;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.DataInput;
@@ -13,21 +13,38 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Library names usually repeat for all components in the list, so they are written once as a table, and each component refers
+ * to the table by index, see {@link DartComponentInfoExternalizer#packHeader}.
+ */
 public class DartComponentInfoListExternalizer implements DataExternalizer<List<DartComponentInfo>> {
 
   @Override
   public void save(@NotNull final DataOutput out, @NotNull final List<DartComponentInfo> infos) throws IOException {
     DataInputOutputUtil.writeINT(out, infos.size());
+    if (infos.isEmpty()) return;
+
+    // indices are shifted by one, 0 means no library name
+    final TObjectIntHashMap<String> libraryNameToIndex = new TObjectIntHashMap<>();
+    final List<String> libraryNames = new ArrayList<>();
     for (DartComponentInfo componentInfo : infos) {
-      final DartComponentType dartComponentType = componentInfo.getComponentType();
-      final int key = dartComponentType == null ? -1 : dartComponentType.getKey();
-      DataInputOutputUtil.writeINT(out, key);
       final String libraryName = componentInfo.getLibraryName();
-      out.writeBoolean(libraryName != null);
-      if (libraryName != null) {
-        IOUtil.writeUTF(out, libraryName);
+      if (libraryName != null && !libraryNameToIndex.containsKey(libraryName)) {
+        libraryNames.add(libraryName);
+        libraryNameToIndex.put(libraryName, libraryNames.size());
       }
     }
+
+    DataInputOutputUtil.writeINT(out, libraryNames.size());
+    for (String libraryName : libraryNames) {
+      IOUtil.writeUTF(out, libraryName);
+    }
+
+    for (DartComponentInfo componentInfo : infos) {
+      final String libraryName = componentInfo.getLibraryName();
+      final int libraryIndex = libraryName == null ? 0 : libraryNameToIndex.get(libraryName);
+      DataInputOutputUtil.writeINT(out, DartComponentInfoExternalizer.packHeader(componentInfo.getComponentType(), libraryIndex));
+    }
   }
 
   @Override
@@ -35,13 +52,18 @@ public class DartComponentInfoListExternalizer implements DataExternalizer<List<
     int size = DataInputOutputUtil.readINT(in);
     if (size == 0) return Collections.emptyList();
 
+    final String[] libraryNames = new String[DataInputOutputUtil.readINT(in)];
+    for (int i = 0; i < libraryNames.length; i++) {
+      libraryNames[i] = IOUtil.readUTF(in);
+    }
+
     List<DartComponentInfo> result = new ArrayList<>(size);
 
     for (int i = 0; i < size; i++) {
-      final int componentTypeKey = DataInputOutputUtil.readINT(in);
-      final boolean hasLibraryName = in.readBoolean();
-      final String libraryName = hasLibraryName ? IOUtil.readUTF(in) : null;
-      result.add(new DartComponentInfo(DartComponentType.valueOf(componentTypeKey), libraryName));
+      final int header = DataInputOutputUtil.readINT(in);
+      final int libraryIndex = DartComponentInfoExternalizer.unpackLibraryIndex(header);
+      result.add(new DartComponentInfo(DartComponentInfoExternalizer.unpackComponentType(header),
+                                       libraryIndex == 0 ? null : libraryNames[libraryIndex - 1]));
     }
 
     return result;
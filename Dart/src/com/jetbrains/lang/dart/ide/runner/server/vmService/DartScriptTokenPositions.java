@@ -0,0 +1,123 @@
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.intellij.util.containers.ContainerUtil;
+import org.dartlang.vm.service.element.Script;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Token position to line and column mapping of a script stored as sorted primitive arrays, looked up by binary search.
+ * <p/>
+ * Instances are shared by all debug sessions: they are cached by script URI and source content, so that scripts that have not
+ * changed (SDK and package libraries first of all) are parsed only once. Values are softly referenced.
+ */
+final class DartScriptTokenPositions {
+  private static final Map<String, DartScriptTokenPositions> ourCache = ContainerUtil.createConcurrentSoftValueMap();
+
+  private final int[] myTokenPositions;
+  private final int[] myLines;
+  private final int[] myColumns;
+
+  private DartScriptTokenPositions(@NotNull final int[] tokenPositions, @NotNull final int[] lines, @NotNull final int[] columns) {
+    myTokenPositions = tokenPositions;
+    myLines = lines;
+    myColumns = columns;
+  }
+
+  @NotNull
+  static DartScriptTokenPositions getInstance(@NotNull final Script script) {
+    final String source = script.getSource();
+    final String key = script.getUri() + '\n' + source.length() + '\n' + source.hashCode();
+    DartScriptTokenPositions positions = ourCache.get(key);
+    if (positions == null) {
+      positions = create(script.getJson().getAsJsonArray("tokenPosTable"));
+      ourCache.put(key, positions);
+    }
+    return positions;
+  }
+
+  /**
+   * Each subarray of the table consists of a line number followed by (tokenPos, columnNumber) pairs,
+   * see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script
+   * <p/>
+   * Numbers are read directly from JSON without creating intermediate lists of boxed integers. Lines and columns are 0-based.
+   */
+  @NotNull
+  static DartScriptTokenPositions create(@Nullable final JsonArray tokenPosTable) {
+    int count = 0;
+    if (tokenPosTable != null) {
+      for (JsonElement lineAndPairs : tokenPosTable) {
+        count += (lineAndPairs.getAsJsonArray().size() - 1) / 2;
+      }
+    }
+
+    int[] tokenPositions = new int[count];
+    int[] lines = new int[count];
+    int[] columns = new int[count];
+    int index = 0;
+    boolean sorted = true;
+
+    if (tokenPosTable != null) {
+      for (JsonElement element : tokenPosTable) {
+        final JsonArray lineAndPairs = element.getAsJsonArray();
+        final int line = Math.max(0, lineAndPairs.get(0).getAsInt() - 1);
+        for (int i = 1; i + 1 < lineAndPairs.size(); i += 2) {
+          tokenPositions[index] = lineAndPairs.get(i).getAsInt();
+          lines[index] = line;
+          columns[index] = Math.max(0, lineAndPairs.get(i + 1).getAsInt() - 1);
+          sorted &= index == 0 || tokenPositions[index - 1] <= tokenPositions[index];
+          index++;
+        }
+      }
+    }
+
+    if (!sorted) {
+      // token positions normally grow with lines and columns, but the protocol doesn't promise that
+      final long[] positionAndIndex = new long[count];
+      for (int i = 0; i < count; i++) {
+        positionAndIndex[i] = ((long)tokenPositions[i] << 32) | i;
+      }
+      Arrays.sort(positionAndIndex);
+
+      final int[] sortedTokenPositions = new int[count];
+      final int[] sortedLines = new int[count];
+      final int[] sortedColumns = new int[count];
+      for (int i = 0; i < count; i++) {
+        final int oldIndex = (int)positionAndIndex[i];
+        sortedTokenPositions[i] = tokenPositions[oldIndex];
+        sortedLines[i] = lines[oldIndex];
+        sortedColumns[i] = columns[oldIndex];
+      }
+      tokenPositions = sortedTokenPositions;
+      lines = sortedLines;
+      columns = sortedColumns;
+    }
+
+    return new DartScriptTokenPositions(tokenPositions, lines, columns);
+  }
+
+  /**
+   * Returns index to be passed to {@link #getLine(int)} and {@link #getColumn(int)}, or -1 if the table doesn't contain the token.
+   */
+  int indexOf(final int tokenPos) {
+    final int index = Arrays.binarySearch(myTokenPositions, tokenPos);
+    return index < 0 ? -1 : index;
+  }
+
+  int getLine(final int index) {
+    return myLines[index];
+  }
+
+  int getColumn(final int index) {
+    return myColumns[index];
+  }
+
+  int size() {
+    return myTokenPositions.length;
+  }
+}
@@ -13,7 +13,6 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Key;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -24,6 +23,7 @@ import com.intellij.psi.search.GlobalSearchScopesCore;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.PathUtil;
 import com.intellij.util.TimeoutUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.xdebugger.*;
 import com.intellij.xdebugger.breakpoints.XBreakpointHandler;
 import com.intellij.xdebugger.evaluation.XDebuggerEditorsProvider;
@@ -40,9 +40,7 @@ import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceSt
 import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceSuspendContext;
 import com.jetbrains.lang.dart.util.DartResolveUtil;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
-import gnu.trove.THashMap;
 import gnu.trove.THashSet;
-import gnu.trove.TIntObjectHashMap;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.element.*;
 import org.dartlang.vm.service.logging.Logging;
@@ -70,9 +68,9 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
   @NotNull private final Set<String> mySuspendedIsolateIds = Collections.synchronizedSet(new THashSet<String>());
   private String myLatestCurrentIsolateId;
 
-  private final Map<String, LightVirtualFile> myScriptIdToContentMap = new THashMap<>();
-  private final Map<String, TIntObjectHashMap<Pair<Integer, Integer>>> myScriptIdToLinesAndColumnsMap =
-    new THashMap<>();
+  // source positions are computed in pooled threads, possibly for several stack frames and values at once
+  private final Map<String, LightVirtualFile> myScriptIdToContentMap = ContainerUtil.newConcurrentMap();
+  private final Map<String, DartScriptTokenPositions> myScriptIdToTokenPositionsMap = ContainerUtil.newConcurrentMap();
 
   @Nullable private final String myDASExecutionContextId;
   private final boolean myRemoteDebug;
@@ -390,6 +388,7 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
   public void isolateSuspended(@NotNull final IsolateRef isolateRef) {
     mySuspendedIsolateIds.add(isolateRef.getId());
+    myVmServiceWrapper.isolatePaused(isolateRef.getId());
   }
 
   public boolean isIsolateSuspended(@NotNull final String isolateId) {
@@ -407,11 +406,13 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
   public void isolateResumed(@NotNull final IsolateRef isolateRef) {
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    myVmServiceWrapper.isolateResumed(isolateRef.getId());
   }
 
   public void isolateExit(@NotNull final IsolateRef isolateRef) {
     myIsolatesInfo.deleteIsolate(isolateRef);
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    myVmServiceWrapper.isolateExited(isolateRef.getId());
 
     if (isolateRef.getId().equals(myLatestCurrentIsolateId)) {
       resume(getSession().getSuspendContext()); // otherwise no way no resume them from UI
@@ -499,8 +500,32 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
   @Nullable
   public XSourcePosition getSourcePosition(@NotNull final String isolateId, @NotNull final ScriptRef scriptRef, int tokenPos) {
-    VirtualFile file = ReadAction.compute(() -> {
-      String uri = scriptRef.getUri();
+    VirtualFile file = findLocalFile(scriptRef.getUri());
+    if (file == null) {
+      file = myScriptIdToContentMap.get(scriptRef.getId());
+    }
+
+    DartScriptTokenPositions tokenPositions = myScriptIdToTokenPositionsMap.get(scriptRef.getId());
+
+    if (file == null || tokenPositions == null) {
+      final Script script = myVmServiceWrapper.getScriptSync(isolateId, scriptRef.getId());
+      if (script == null) return null;
+
+      tokenPositions = scriptLoaded(script, file == null);
+      if (file == null) {
+        file = myScriptIdToContentMap.get(scriptRef.getId());
+      }
+    }
+
+    final int index = tokenPositions.indexOf(tokenPos);
+    if (index < 0) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
+    return XDebuggerUtil.getInstance().createPosition(file, tokenPositions.getLine(index), tokenPositions.getColumn(index));
+  }
+
+  @Nullable
+  private VirtualFile findLocalFile(@NotNull final String scriptUri) {
+    return ReadAction.compute(() -> {
+      String uri = scriptUri;
 
       if (myDASExecutionContextId != null && !isDartPatchUri(uri)) {
         final String path =
@@ -520,36 +545,30 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
       return myDartUrlResolver.findFileByDartUrl(uri);
     });
+  }
 
-    if (file == null) {
-      file = myScriptIdToContentMap.get(scriptRef.getId());
-    }
-
-    TIntObjectHashMap<Pair<Integer, Integer>> tokenPosToLineAndColumn = myScriptIdToLinesAndColumnsMap.get(scriptRef.getId());
-
-    if (file != null && tokenPosToLineAndColumn != null) {
-      final Pair<Integer, Integer> lineAndColumn = tokenPosToLineAndColumn.get(tokenPos);
-      if (lineAndColumn == null) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
-      return XDebuggerUtil.getInstance().createPosition(file, lineAndColumn.first, lineAndColumn.second);
-    }
-
-    final Script script = myVmServiceWrapper.getScriptSync(isolateId, scriptRef.getId());
-    if (script == null) return null;
+  boolean isScriptLoaded(@NotNull final String scriptId) {
+    return myScriptIdToTokenPositionsMap.containsKey(scriptId);
+  }
 
-    if (file == null) {
-      file = new LightVirtualFile(PathUtil.getFileName(script.getUri()), DartFileType.INSTANCE, script.getSource());
-      ((LightVirtualFile)file).setWritable(false);
-      myScriptIdToContentMap.put(scriptRef.getId(), (LightVirtualFile)file);
-    }
+  /**
+   * Called for scripts fetched ahead of time, see {@link VmServiceWrapper#computeStackFrames}.
+   */
+  void scriptPrefetched(@NotNull final Script script) {
+    scriptLoaded(script, findLocalFile(script.getUri()) == null);
+  }
 
-    if (tokenPosToLineAndColumn == null) {
-      tokenPosToLineAndColumn = createTokenPosToLineAndColumnMap(script.getTokenPosTable());
-      myScriptIdToLinesAndColumnsMap.put(scriptRef.getId(), tokenPosToLineAndColumn);
+  @NotNull
+  private DartScriptTokenPositions scriptLoaded(@NotNull final Script script, final boolean keepContent) {
+    if (keepContent && !myScriptIdToContentMap.containsKey(script.getId())) {
+      final LightVirtualFile file = new LightVirtualFile(PathUtil.getFileName(script.getUri()), DartFileType.INSTANCE, script.getSource());
+      file.setWritable(false);
+      myScriptIdToContentMap.put(script.getId(), file);
     }
 
-    final Pair<Integer, Integer> lineAndColumn = tokenPosToLineAndColumn.get(tokenPos);
-    if (lineAndColumn == null) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
-    return XDebuggerUtil.getInstance().createPosition(file, lineAndColumn.first, lineAndColumn.second);
+    final DartScriptTokenPositions tokenPositions = DartScriptTokenPositions.getInstance(script);
+    myScriptIdToTokenPositionsMap.put(script.getId(), tokenPositions);
+    return tokenPositions;
   }
 
   private static boolean isDartPatchUri(@NotNull final String uri) {
@@ -557,25 +576,6 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
     return uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/");
   }
 
-  @NotNull
-  private static TIntObjectHashMap<Pair<Integer, Integer>> createTokenPosToLineAndColumnMap(@NotNull final List<List<Integer>> tokenPosTable) {
-    // Each subarray consists of a line number followed by (tokenPos, columnNumber) pairs
-    // see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script
-    final TIntObjectHashMap<Pair<Integer, Integer>> result = new TIntObjectHashMap<>();
-
-    for (List<Integer> lineAndPairs : tokenPosTable) {
-      final Iterator<Integer> iterator = lineAndPairs.iterator();
-      int line = Math.max(0, iterator.next() - 1);
-      while (iterator.hasNext()) {
-        final int tokenPos = iterator.next();
-        final int column = Math.max(0, iterator.next() - 1);
-        result.put(tokenPos, Pair.create(line, column));
-      }
-    }
-
-    return result;
-  }
-
   @NotNull
   private static String threeSlashize(@NotNull final String uri) {
     if (!uri.startsWith("file:")) return uri;
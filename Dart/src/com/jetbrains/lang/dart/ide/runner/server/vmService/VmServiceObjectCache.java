@@ -0,0 +1,210 @@
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.THashMap;
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.Obj;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Responses to {@code getObject} requests that were sent speculatively, before the user expanded the corresponding node in the
+ * Variables view. A request sent later for the same object joins the speculative one, whether it's still in flight or already answered.
+ * <p/>
+ * Objects change when the isolate runs, so all entries of an isolate are dropped when it resumes or exits. Each resume also starts a new
+ * pause generation of the isolate: entries are tagged with the generation they were prefetched in and are ignored in later ones, and
+ * nothing is prefetched while the isolate is running, so a response to a request sent before the resume is never used after it.
+ */
+class VmServiceObjectCache {
+  private static final int MAX_ENTRIES_PER_PAUSE = 200;
+
+  private static final class IsolateState {
+    private int myGeneration;
+    private boolean myPaused;
+    private int myEntryCount; // prefetched during the current pause
+  }
+
+  private static final class Key {
+    @NotNull private final String myIsolateId;
+    @NotNull private final String myObjectId;
+    private final int myOffset;
+    private final int myCount;
+
+    private Key(@NotNull final String isolateId, @NotNull final String objectId, final int offset, final int count) {
+      myIsolateId = isolateId;
+      myObjectId = objectId;
+      myOffset = offset;
+      myCount = count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      final Key key = (Key)o;
+      return myOffset == key.myOffset &&
+             myCount == key.myCount &&
+             myIsolateId.equals(key.myIsolateId) &&
+             myObjectId.equals(key.myObjectId);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = myIsolateId.hashCode();
+      result = 31 * result + myObjectId.hashCode();
+      result = 31 * result + myOffset;
+      result = 31 * result + myCount;
+      return result;
+    }
+  }
+
+  /**
+   * Consumer of the speculative request, passes the response to all consumers that joined it.
+   */
+  private static final class Entry implements GetObjectConsumer {
+    private final int myGeneration;
+    private final List<GetObjectConsumer> myConsumers = new SmartList<>();
+    private boolean myDone;
+    private Obj myObj;
+    private Sentinel mySentinel;
+    private RPCError myError;
+
+    private Entry(final int generation) {
+      myGeneration = generation;
+    }
+
+    @Override
+    public void received(Obj response) {
+      done(response, null, null);
+    }
+
+    @Override
+    public void received(Sentinel response) {
+      done(null, response, null);
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      done(null, null, error);
+    }
+
+    private void done(@Nullable final Obj obj, @Nullable final Sentinel sentinel, @Nullable final RPCError error) {
+      final List<GetObjectConsumer> consumers;
+      synchronized (this) {
+        myObj = obj;
+        mySentinel = sentinel;
+        myError = error;
+        myDone = true;
+        consumers = new SmartList<>(myConsumers);
+        myConsumers.clear();
+      }
+
+      for (GetObjectConsumer consumer : consumers) {
+        notifyConsumer(consumer);
+      }
+    }
+
+    private void join(@NotNull final GetObjectConsumer consumer) {
+      synchronized (this) {
+        if (!myDone) {
+          myConsumers.add(consumer);
+          return;
+        }
+      }
+      // the caller may be the EDT, consumers are normally called in a background thread
+      ApplicationManager.getApplication().executeOnPooledThread(() -> notifyConsumer(consumer));
+    }
+
+    private void notifyConsumer(@NotNull final GetObjectConsumer consumer) {
+      if (myObj != null) {
+        consumer.received(myObj);
+      }
+      else if (mySentinel != null) {
+        consumer.received(mySentinel);
+      }
+      else {
+        consumer.onError(myError);
+      }
+    }
+  }
+
+  private final ConcurrentMap<Key, Entry> myEntries = ContainerUtil.newConcurrentMap();
+  private final Map<String, IsolateState> myIsolates = new THashMap<>(); // guarded by itself
+
+  /**
+   * Returns the consumer to be passed to the speculative request, or {@code null} if such request has already been sent, the isolate
+   * is not paused or too many objects of the isolate have been prefetched during this pause.
+   */
+  @Nullable
+  GetObjectConsumer startPrefetch(@NotNull final String isolateId, @NotNull final String objectId, final int offset, final int count) {
+    synchronized (myIsolates) {
+      final IsolateState state = myIsolates.get(isolateId);
+      if (state == null || !state.myPaused || state.myEntryCount >= MAX_ENTRIES_PER_PAUSE) return null;
+
+      final Entry entry = new Entry(state.myGeneration);
+      if (myEntries.putIfAbsent(new Key(isolateId, objectId, offset, count), entry) != null) return null;
+
+      state.myEntryCount++;
+      return entry;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the {@code consumer} has joined a speculative request of the current pause and will get its response;
+   * the entry is removed so that the next request for the same object goes to the VM.
+   */
+  boolean join(@NotNull final String isolateId,
+               @NotNull final String objectId,
+               final int offset,
+               final int count,
+               @NotNull final GetObjectConsumer consumer) {
+    final Entry entry = myEntries.remove(new Key(isolateId, objectId, offset, count));
+    if (entry == null) return false;
+
+    synchronized (myIsolates) {
+      final IsolateState state = myIsolates.get(isolateId);
+      if (state == null || state.myGeneration != entry.myGeneration) return false;
+    }
+
+    entry.join(consumer);
+    return true;
+  }
+
+  void isolatePaused(@NotNull final String isolateId) {
+    synchronized (myIsolates) {
+      IsolateState state = myIsolates.get(isolateId);
+      if (state == null) {
+        state = new IsolateState();
+        myIsolates.put(isolateId, state);
+      }
+      state.myPaused = true;
+    }
+  }
+
+  void isolateResumed(@NotNull final String isolateId) {
+    synchronized (myIsolates) {
+      final IsolateState state = myIsolates.get(isolateId);
+      if (state != null) {
+        state.myGeneration++;
+        state.myPaused = false;
+        state.myEntryCount = 0;
+      }
+      myEntries.keySet().removeIf(key -> key.myIsolateId.equals(isolateId));
+    }
+  }
+
+  void isolateExited(@NotNull final String isolateId) {
+    isolateResumed(isolateId);
+    synchronized (myIsolates) {
+      myIsolates.remove(isolateId);
+    }
+  }
+}
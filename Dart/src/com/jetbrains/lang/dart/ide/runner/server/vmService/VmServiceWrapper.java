@@ -5,6 +5,7 @@ import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.util.Alarm;
 import com.intellij.util.concurrency.Semaphore;
@@ -19,6 +20,7 @@ import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartAsyncMarker
 import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceEvaluator;
 import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceStackFrame;
 import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceValue;
+import gnu.trove.THashSet;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.consumer.*;
 import org.dartlang.vm.service.element.*;
@@ -28,8 +30,11 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class VmServiceWrapper implements Disposable {
@@ -43,6 +48,7 @@ public class VmServiceWrapper implements Disposable {
   private final IsolatesInfo myIsolatesInfo;
   private final DartVmServiceBreakpointHandler myBreakpointHandler;
   private final Alarm myRequestsScheduler;
+  private final VmServiceObjectCache myObjectCache = new VmServiceObjectCache();
 
   private long myVmServiceReceiverThreadId;
 
@@ -227,34 +233,54 @@ public class VmServiceWrapper implements Disposable {
       return;
     }
 
-    final AtomicInteger counter = new AtomicInteger(xBreakpoints.size());
-
-    for (final XLineBreakpoint<XBreakpointProperties> xBreakpoint : xBreakpoints) {
-      addBreakpoint(isolateId, xBreakpoint.getSourcePosition(), new VmServiceConsumers.BreakpointConsumerWrapper() {
-        @Override
-        void sourcePositionNotApplicable() {
-          checkDone();
+    // All requests are sent by a single scheduled task without waiting for responses; onFinished is called after the last response.
+    // There may be several requests per breakpoint, one per URI of the file.
+    addRequest(() -> {
+      final List<Pair<XLineBreakpoint<XBreakpointProperties>, String>> breakpointsAndUris = new ArrayList<>();
+
+      for (XLineBreakpoint<XBreakpointProperties> xBreakpoint : xBreakpoints) {
+        final XSourcePosition position = xBreakpoint.getSourcePosition();
+        final Collection<String> uris = position == null || position.getFile().getFileType() != DartFileType.INSTANCE
+                                        ? Collections.<String>emptyList()
+                                        : myDebugProcess.getUrisForFile(position.getFile());
+        for (String uri : uris) {
+          breakpointsAndUris.add(Pair.create(xBreakpoint, uri));
         }
+      }
 
-        @Override
-        public void received(Breakpoint vmBreakpoint) {
-          myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateId, vmBreakpoint);
-          checkDone();
+      if (breakpointsAndUris.isEmpty()) {
+        if (onFinished != null) {
+          onFinished.run();
         }
+        return;
+      }
 
-        @Override
-        public void onError(RPCError error) {
-          myBreakpointHandler.breakpointFailed(xBreakpoint);
-          checkDone();
-        }
+      final AtomicInteger counter = new AtomicInteger(breakpointsAndUris.size());
 
-        private void checkDone() {
-          if (counter.decrementAndGet() == 0 && onFinished != null) {
-            onFinished.run();
+      for (Pair<XLineBreakpoint<XBreakpointProperties>, String> breakpointAndUri : breakpointsAndUris) {
+        final XLineBreakpoint<XBreakpointProperties> xBreakpoint = breakpointAndUri.first;
+        final int line = xBreakpoint.getLine() + 1;
+        myVmService.addBreakpointWithScriptUri(isolateId, breakpointAndUri.second, line, new BreakpointConsumer() {
+          @Override
+          public void received(Breakpoint vmBreakpoint) {
+            myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateId, vmBreakpoint);
+            checkDone();
           }
-        }
-      });
-    }
+
+          @Override
+          public void onError(RPCError error) {
+            myBreakpointHandler.breakpointFailed(xBreakpoint);
+            checkDone();
+          }
+
+          private void checkDone() {
+            if (counter.decrementAndGet() == 0 && onFinished != null) {
+              onFinished.run();
+            }
+          }
+        });
+      }
+    });
   }
 
   public void addBreakpoint(@NotNull final String isolateId,
@@ -326,6 +352,7 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void resumeIsolate(@NotNull final String isolateId, @Nullable final StepOption stepOption) {
+    myObjectCache.isolateResumed(isolateId);
     addRequest(() -> {
       myLatestStep = stepOption;
       myVmService.resume(isolateId, stepOption, null, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
@@ -345,6 +372,7 @@ public class VmServiceWrapper implements Disposable {
    * function, so frameIndex must be at least 1.
    */
   public void dropFrame(@NotNull final String isolateId, int frameIndex) {
+    myObjectCache.isolateResumed(isolateId);
     addRequest(() -> {
       myLatestStep = StepOption.Rewind;
       myVmService.resume(isolateId, StepOption.Rewind, frameIndex, new SuccessConsumer() {
@@ -384,6 +412,8 @@ public class VmServiceWrapper implements Disposable {
           final List<Frame> vmFrames = Lists.newArrayList(elementList);
           final List<XStackFrame> xStackFrames = new ArrayList<>(vmFrames.size());
 
+          prefetchScripts(isolateId, vmFrames);
+
           for (final Frame vmFrame : vmFrames) {
             if (vmFrame.getKind() == FrameKind.AsyncSuspensionMarker) {
               // Render an asynchronous gap.
@@ -413,6 +443,62 @@ public class VmServiceWrapper implements Disposable {
     }));
   }
 
+  /**
+   * Requests all scripts of the stack that are not loaded yet at once instead of one synchronous request per frame,
+   * so that creating stack frames doesn't wait for a round trip for each of them.
+   */
+  private void prefetchScripts(@NotNull final String isolateId, @NotNull final List<Frame> vmFrames) {
+    final Set<String> scriptIds = new THashSet<>();
+    for (Frame vmFrame : vmFrames) {
+      if (vmFrame.getKind() == FrameKind.AsyncSuspensionMarker) continue;
+      final String scriptId = vmFrame.getLocation().getScript().getId();
+      if (!myDebugProcess.isScriptLoaded(scriptId)) {
+        scriptIds.add(scriptId);
+      }
+    }
+
+    if (scriptIds.isEmpty()) return;
+
+    assertSyncRequestAllowed();
+
+    final CountDownLatch latch = new CountDownLatch(scriptIds.size());
+    for (String scriptId : scriptIds) {
+      addRequest(() -> myVmService.getObject(isolateId, scriptId, new GetObjectConsumer() {
+        @Override
+        public void received(Obj script) {
+          // don't block the Web Socket listening thread, resolving local file may need a request to the Analysis Server
+          ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+              if (script instanceof Script) {
+                myDebugProcess.scriptPrefetched((Script)script);
+              }
+            }
+            finally {
+              latch.countDown();
+            }
+          });
+        }
+
+        @Override
+        public void received(Sentinel response) {
+          latch.countDown();
+        }
+
+        @Override
+        public void onError(RPCError error) {
+          latch.countDown();
+        }
+      }));
+    }
+
+    try {
+      // scripts that are not received in time are requested again synchronously when needed
+      latch.await(RESPONSE_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException ignored) {
+    }
+  }
+
   @Nullable
   public Script getScriptSync(@NotNull final String isolateId, @NotNull final String scriptId) {
     assertSyncRequestAllowed();
@@ -445,6 +531,7 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void getObject(@NotNull final String isolateId, @NotNull final String objectId, @NotNull final GetObjectConsumer consumer) {
+    if (myObjectCache.join(isolateId, objectId, -1, -1, consumer)) return;
     addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
   }
 
@@ -453,9 +540,43 @@ public class VmServiceWrapper implements Disposable {
                                   final int offset,
                                   final int count,
                                   @NotNull final GetObjectConsumer consumer) {
+    if (myObjectCache.join(isolateId, objectId, offset, count, consumer)) return;
     addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
   }
 
+  /**
+   * Sends the request that {@link #getObject} is likely to be called for soon, e.g. when the user expands a variable.
+   * The response is kept until the isolate resumes.
+   */
+  public void prefetchObject(@NotNull final String isolateId, @NotNull final String objectId) {
+    final GetObjectConsumer consumer = myObjectCache.startPrefetch(isolateId, objectId, -1, -1);
+    if (consumer != null) {
+      addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+    }
+  }
+
+  /**
+   * Same as {@link #prefetchObject} for {@link #getCollectionObject}.
+   */
+  public void prefetchCollectionObject(@NotNull final String isolateId, @NotNull final String objectId, final int offset, final int count) {
+    final GetObjectConsumer consumer = myObjectCache.startPrefetch(isolateId, objectId, offset, count);
+    if (consumer != null) {
+      addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+    }
+  }
+
+  public void isolatePaused(@NotNull final String isolateId) {
+    myObjectCache.isolatePaused(isolateId);
+  }
+
+  public void isolateResumed(@NotNull final String isolateId) {
+    myObjectCache.isolateResumed(isolateId);
+  }
+
+  public void isolateExited(@NotNull final String isolateId) {
+    myObjectCache.isolateExited(isolateId);
+  }
+
   public void evaluateInFrame(@NotNull final String isolateId,
                               @NotNull final Frame vmFrame,
                               @NotNull final String expression,
@@ -169,6 +169,7 @@ public class DartVmServiceStackFrame extends XStackFrame {
           ? null
           : new DartVmServiceValue.LocalVarSourceLocation(myVmFrame.getLocation().getScript(), var.getDeclarationTokenPos());
         childrenList.add(new DartVmServiceValue(myDebugProcess, myIsolateId, var.getName(), value, varLocation, null, false));
+        DartVmServiceValue.prefetchChildren(myDebugProcess, myIsolateId, value);
       }
     }
 
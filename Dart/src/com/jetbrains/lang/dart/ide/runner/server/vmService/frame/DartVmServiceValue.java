@@ -362,6 +362,9 @@ public class DartVmServiceValue extends XNamedValue {
 
         if (offset + count < myInstanceRef.getLength()) {
           node.tooManyChildren(myInstanceRef.getLength() - offset - count);
+
+          final int nextCount = Math.min(myInstanceRef.getLength() - offset - count, XCompositeNode.MAX_CHILDREN_TO_SHOW);
+          myDebugProcess.getVmServiceWrapper().prefetchCollectionObject(myIsolateId, myInstanceRef.getId(), offset + count, nextCount);
         }
       }
 
@@ -426,11 +429,39 @@ public class DartVmServiceValue extends XNamedValue {
       if (value != null) {
         childrenList
           .add(new DartVmServiceValue(myDebugProcess, myIsolateId, field.getDecl().getName(), value, null, field.getDecl(), false));
+        prefetchChildren(myDebugProcess, myIsolateId, value);
       }
     }
     node.addChildren(childrenList, true);
   }
 
+  /**
+   * Sends in advance the request that {@link #computeChildren} of the value for {@code instanceRef} will send, so that the response is
+   * likely to be ready by the time the user expands the node.
+   */
+  static void prefetchChildren(@NotNull final DartVmServiceDebugProcess debugProcess,
+                               @NotNull final String isolateId,
+                               @NotNull final InstanceRef instanceRef) {
+    final InstanceKind kind = instanceRef.getKind();
+    if (kind == InstanceKind.Null ||
+        kind == InstanceKind.Bool ||
+        kind == InstanceKind.Double ||
+        kind == InstanceKind.Int ||
+        kind == InstanceKind.String) {
+      return;
+    }
+
+    if (isListKind(kind) || kind == InstanceKind.Map) {
+      final int count = Math.min(instanceRef.getLength(), XCompositeNode.MAX_CHILDREN_TO_SHOW);
+      if (count > 0) {
+        debugProcess.getVmServiceWrapper().prefetchCollectionObject(isolateId, instanceRef.getId(), 0, count);
+      }
+    }
+    else {
+      debugProcess.getVmServiceWrapper().prefetchObject(isolateId, instanceRef.getId());
+    }
+  }
+
   @NotNull
   private static String getShortPresentableValue(@NotNull final InstanceRef instanceRef) {
     // getValueAsString() is provided for the instance kinds: Null, Bool, Double, Int, String (value may be truncated), Float32x4, Float64x2, Int32x4, StackTrace
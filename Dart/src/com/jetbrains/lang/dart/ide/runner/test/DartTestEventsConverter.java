@@ -12,16 +12,17 @@ import com.intellij.util.PathUtil;
 import com.jetbrains.lang.dart.ide.runner.util.DartTestLocationProvider;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 import gnu.trove.TIntLongHashMap;
+import gnu.trove.TIntObjectHashMap;
 import jetbrains.buildServer.messages.serviceMessages.ServiceMessageVisitor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Type;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,6 +32,9 @@ import java.util.regex.Pattern;
  * NOTE: The test runner runs tests asynchronously. It is possible to get a 'testDone'
  * event followed some time later by an 'error' event for that same test. That should
  * convert a successful test into a failure. That case is not being handled.
+ * <p/>
+ * Completed tests and groups are evicted, so that memory doesn't grow with the number of tests in the run. A limited number of
+ * completed tests is kept for late 'error' and 'print' events, and of completed groups for their late '(tearDownAll)' virtual tests.
  */
 public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter {
   private static final Logger LOG = Logger.getInstance(DartTestEventsConverter.class.getName());
@@ -83,7 +87,13 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
   private static final String SET_UP_ALL_VIRTUAL_TEST_NAME = "(setUpAll)";
   private static final String TEAR_DOWN_ALL_VIRTUAL_TEST_NAME = "(tearDownAll)";
 
+  // number of completed tests kept for 'error' and 'print' events that arrive after 'testDone'
+  private static final int DONE_TESTS_TO_KEEP = 1000;
+  // number of completed groups kept for virtual tests like '(tearDownAll)' that start after all counted tests of the group are done
+  private static final int DONE_GROUPS_TO_KEEP = 1000;
+
   private static final Gson GSON = new Gson();
+  private static final JsonParser JSON_PARSER = new JsonParser();
 
   @NotNull private final DartUrlResolver myUrlResolver;
 
@@ -91,9 +101,11 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
   private Key myCurrentOutputType;
   private ServiceMessageVisitor myCurrentVisitor;
   private TIntLongHashMap myTestIdToTimestamp;
-  private Map<Integer, Test> myTestData;
-  private Map<Integer, Group> myGroupData;
-  private Map<Integer, Suite> mySuiteData;
+  private TIntObjectHashMap<Test> myTestData;
+  private TIntObjectHashMap<Group> myGroupData;
+  private TIntObjectHashMap<Suite> mySuiteData;
+  private Map<Integer, Test> myDoneTestData;
+  private Map<Integer, Group> myDoneGroupData;
   private int mySuitCount;
 
   public DartTestEventsConverter(@NotNull final String testFrameworkName,
@@ -102,9 +114,21 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
     super(testFrameworkName, consoleProperties);
     myUrlResolver = urlResolver;
     myTestIdToTimestamp = new TIntLongHashMap();
-    myTestData = new HashMap<>();
-    myGroupData = new HashMap<>();
-    mySuiteData = new HashMap<>();
+    myTestData = new TIntObjectHashMap<>();
+    myGroupData = new TIntObjectHashMap<>();
+    mySuiteData = new TIntObjectHashMap<>();
+    myDoneTestData = new LinkedHashMap<Integer, Test>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Test> eldest) {
+        return size() > DONE_TESTS_TO_KEEP;
+      }
+    };
+    myDoneGroupData = new LinkedHashMap<Integer, Group>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Group> eldest) {
+        return size() > DONE_GROUPS_TO_KEEP;
+      }
+    };
   }
 
   protected boolean processServiceMessages(final String text, final Key outputType, final ServiceMessageVisitor visitor)
@@ -117,26 +141,34 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
   }
 
   private boolean processEventText(final String text) throws JsonSyntaxException, ParseException {
-    JsonParser jp = new JsonParser();
+    // most of the output of a large run is plain text printed by tests, don't make the parser fail on each line of it
+    if (!StringUtil.startsWithChar(StringUtil.trimLeading(text), '{')) {
+      return processNonJsonText(text);
+    }
+
     JsonElement elem;
     try {
-      elem = jp.parse(text);
+      elem = JSON_PARSER.parse(text);
     }
     catch (JsonSyntaxException ex) {
-      if (text.contains("\"json\" is not an allowed value for option \"reporter\"")) {
-        final ServiceMessageBuilder testStarted = ServiceMessageBuilder.testStarted("Failed to start");
-        final ServiceMessageBuilder testFailed = ServiceMessageBuilder.testFailed("Failed to start");
-        testFailed.addAttribute("message", "Please update your pubspec.yaml dependency on package:test to version 0.12.9 or later.");
-        final ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished("Failed to start");
-        return finishMessage(testStarted, 1, 0) & finishMessage(testFailed, 1, 0) & finishMessage(testFinished, 1, 0);
-      }
-
-      return doProcessServiceMessages(text);
+      return processNonJsonText(text);
     }
     if (elem == null || !elem.isJsonObject()) return false;
     return process(elem.getAsJsonObject());
   }
 
+  private boolean processNonJsonText(@NotNull final String text) throws ParseException {
+    if (text.contains("\"json\" is not an allowed value for option \"reporter\"")) {
+      final ServiceMessageBuilder testStarted = ServiceMessageBuilder.testStarted("Failed to start");
+      final ServiceMessageBuilder testFailed = ServiceMessageBuilder.testFailed("Failed to start");
+      testFailed.addAttribute("message", "Please update your pubspec.yaml dependency on package:test to version 0.12.9 or later.");
+      final ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished("Failed to start");
+      return finishMessage(testStarted, 1, 0) & finishMessage(testFailed, 1, 0) & finishMessage(testFinished, 1, 0);
+    }
+
+    return doProcessServiceMessages(text);
+  }
+
   private boolean doProcessServiceMessages(@NotNull final String text) throws ParseException {
     LOG.debug(">>> " + text);
     return super.processServiceMessages(text, myCurrentOutputType, myCurrentVisitor);
@@ -181,6 +213,7 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
 
     // Not reached if testObj == null.
     final Test test = getTest(obj);
+    if (test == null) return true;
     myTestIdToTimestamp.put(test.getId(), getTimestamp(obj));
 
     if (shouldTestBeHiddenIfPassed(test)) {
@@ -231,6 +264,11 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
 
   private boolean handleTestDone(JsonObject obj) throws ParseException {
     final Test test = getTest(obj);
+    if (test == null) return true;
+
+    final long startTimestamp = myTestIdToTimestamp.remove(test.getId());
+    myTestData.remove(test.getId());
+    myDoneTestData.put(test.getId(), test);
 
     if (!test.myTestStartReported) return true;
 
@@ -244,7 +282,7 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
     //if (test.getMetadata().skip) return true; // skipped tests are reported as ignored in handleTestStart(). testFinished signal must follow
 
     ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished(test.getBaseName());
-    long duration = getTimestamp(obj) - myTestIdToTimestamp.get(test.getId());
+    long duration = getTimestamp(obj) - startTimestamp;
     testFinished.addAttribute("duration", Long.toString(duration));
 
     return finishMessage(testFinished, test.getId(), test.getValidParentId()) && checkGroupDone(test.getParent());
@@ -252,6 +290,9 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
 
   private boolean checkGroupDone(@Nullable final Group group) throws ParseException {
     if (group != null && group.getTestCount() > 0 && group.getDoneTestsCount() == group.getTestCount()) {
+      // counted tests of this group are done, but virtual tests like '(tearDownAll)' may still refer to it
+      myGroupData.remove(group.getId());
+      myDoneGroupData.put(group.getId(), group);
       return processGroupDone(group) && checkGroupDone(group.getParent());
     }
     return true;
@@ -286,6 +327,7 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
 
   private boolean handleError(JsonObject obj) throws ParseException {
     final Test test = getTest(obj);
+    if (test == null) return true;
     final String message = getErrorMessage(obj);
     boolean result = true;
 
@@ -352,6 +394,7 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
 
   private boolean handlePrint(JsonObject obj) throws ParseException {
     final Test test = getTest(obj);
+    if (test == null) return true;
     boolean result = true;
 
     if (!test.myTestStartReported) {
@@ -375,6 +418,8 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
     myTestData.clear();
     myGroupData.clear();
     mySuiteData.clear();
+    myDoneTestData.clear();
+    myDoneGroupData.clear();
     mySuitCount = 0;
 
     return doProcessServiceMessages(new ServiceMessageBuilder("enteredTheMatrix").toString());
@@ -388,7 +433,7 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
 
   private void processAllTestsDone() {
     // All tests are done.
-    for (Group group : myGroupData.values()) {
+    myGroupData.forEachValue(group -> {
       // For package: test prior to v. 0.12.9 there were no Group.testCount field, so need to finish them all at the end.
       // AFAIK the order does not matter. A depth-first post-order traversal of the tree would work
       // if order does matter. Note: Currently, there is no tree representation, just parent links.
@@ -401,11 +446,14 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
           // ignore it
         }
       }
-    }
+      return true;
+    });
     myTestIdToTimestamp.clear();
     myTestData.clear();
     myGroupData.clear();
     mySuiteData.clear();
+    myDoneTestData.clear();
+    myDoneGroupData.clear();
     mySuitCount = 0;
   }
 
@@ -461,9 +509,28 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
     return val.getAsBoolean();
   }
 
-  @NotNull
+  /**
+   * Returns {@code null} for events that refer to a test that was evicted or never started.
+   */
+  @Nullable
   private Test getTest(JsonObject obj) throws ParseException {
-    return getItem(obj, myTestData);
+    final Test test = getItem(obj, myTestData);
+    if (test != null) return test;
+
+    final JsonElement testId = obj.get(JSON_TEST_ID);
+    if (testId != null && testId.isJsonPrimitive()) {
+      final Test doneTest = myDoneTestData.get(testId.getAsInt());
+      if (doneTest != null) return doneTest;
+    }
+
+    LOG.debug("Event for unknown test: " + obj);
+    return null;
+  }
+
+  @Nullable
+  private Group findGroup(final int groupId) {
+    final Group group = myGroupData.get(groupId);
+    return group != null ? group : myDoneGroupData.get(groupId);
   }
 
   @NotNull
@@ -476,18 +543,17 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
     return getItem(obj, mySuiteData);
   }
 
-  @NotNull
-  private <T extends Item> T getItem(JsonObject obj, Map<Integer, T> items) throws ParseException {
+  private <T extends Item> T getItem(JsonObject obj, TIntObjectHashMap<T> items) throws ParseException {
     if (obj == null) throw new ParseException("Unexpected null json object", 0);
     T item;
     JsonElement id = obj.get(JSON_ID);
     if (id != null) {
       if (items == myTestData) {
-        @SuppressWarnings("unchecked") T type = (T)Test.from(obj, myGroupData, mySuiteData);
+        @SuppressWarnings("unchecked") T type = (T)Test.from(obj, this::findGroup, mySuiteData);
         item = type;
       }
       else if (items == myGroupData) {
-        @SuppressWarnings("unchecked") T group = (T)Group.from(obj, myGroupData, mySuiteData);
+        @SuppressWarnings("unchecked") T group = (T)Group.from(obj, this::findGroup, mySuiteData);
         item = group;
       }
       else {
@@ -569,7 +635,7 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
       return Metadata.from(obj.get(DEF_METADATA));
     }
 
-    static Suite lookupSuite(JsonObject obj, Map<Integer, Suite> suites) {
+    static Suite lookupSuite(JsonObject obj, TIntObjectHashMap<Suite> suites) {
       JsonElement suiteObj = obj.get(JSON_SUITE_ID);
       Suite suite = null;
       if (suiteObj != null && suiteObj.isJsonPrimitive()) {
@@ -702,11 +768,12 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
     private boolean myTestStartReported = false;
     private boolean myTestErrorReported = false;
 
-    static Test from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
-      int[] groupIds = GSON.fromJson(obj.get(JSON_GROUP_IDS), (Type)int[].class);
+    static Test from(JsonObject obj, IntFunction<Group> groups, TIntObjectHashMap<Suite> suites) {
+      final JsonElement groupIds = obj.get(JSON_GROUP_IDS);
       Group parent = null;
-      if (groupIds != null && groupIds.length > 0) {
-        parent = groups.get(groupIds[groupIds.length - 1]);
+      if (groupIds != null && groupIds.isJsonArray() && groupIds.getAsJsonArray().size() > 0) {
+        final JsonArray groupIdsArray = groupIds.getAsJsonArray();
+        parent = groups.apply(groupIdsArray.get(groupIdsArray.size() - 1).getAsInt());
       }
       Suite suite = lookupSuite(obj, suites);
       final int line = extractInt(obj, JSON_LINE);
@@ -730,12 +797,12 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
     private int myTestCount = 0;
     private int myDoneTestsCount = 0;
 
-    static Group from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
+    static Group from(JsonObject obj, IntFunction<Group> groups, TIntObjectHashMap<Suite> suites) {
       JsonElement parentObj = obj.get(JSON_PARENT_ID);
       Group parent = null;
       if (parentObj != null && parentObj.isJsonPrimitive()) {
         int parentId = parentObj.getAsInt();
-        parent = groups.get(parentId);
+        parent = groups.apply(parentId);
       }
       Suite suite = lookupSuite(obj, suites);
       final int line = extractInt(obj, JSON_LINE);
@@ -768,7 +835,7 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
   }
 
   private static class Suite extends Item {
-    static Metadata NoMetadata = new Metadata();
+    static Metadata NoMetadata = Metadata.NONE;
     static String NONE = "<none>";
 
     static Suite from(JsonObject obj) {
@@ -796,12 +863,24 @@ public class DartTestEventsConverter extends OutputToGeneralTestEventsConverter
   }
 
   private static class Metadata {
-    @SuppressWarnings("unused") private boolean skip; // assigned by GSON via reflection
-    @SuppressWarnings("unused") private String skipReason; // assigned by GSON via reflection
+    private static final Metadata NONE = new Metadata(false, null);
+
+    private final boolean skip;
+    private final String skipReason;
+
+    private Metadata(boolean skip, String skipReason) {
+      this.skip = skip;
+      this.skipReason = skipReason;
+    }
 
     static Metadata from(JsonElement elem) {
-      if (elem == null) return new Metadata();
-      return GSON.fromJson(elem, (Type)Metadata.class);
+      if (elem == null || !elem.isJsonObject()) return NONE;
+
+      final JsonElement skip = elem.getAsJsonObject().get("skip");
+      final JsonElement skipReason = elem.getAsJsonObject().get("skipReason");
+      final boolean isSkipped = skip != null && skip.isJsonPrimitive() && skip.getAsBoolean();
+      final String reason = skipReason != null && skipReason.isJsonPrimitive() ? skipReason.getAsString() : null;
+      return isSkipped || reason != null ? new Metadata(isSkipped, reason) : NONE;
     }
   }
 }
@@ -1,36 +1,117 @@
 package com.jetbrains.lang.dart.psi;
 
+import com.intellij.ProjectTopics;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
 import com.intellij.psi.impl.AnyPsiChangeListener;
 import com.intellij.psi.impl.PsiManagerImpl;
+import com.intellij.psi.impl.PsiTreeChangeEventImpl;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.messages.MessageBus;
+import com.intellij.util.messages.MessageBusConnection;
+import com.jetbrains.lang.dart.DartLanguage;
 import com.jetbrains.lang.dart.util.DartClassResolveResult;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Each entry remembers the files of all classes its resolve result was built from, i.e. the class itself, its supertypes and
+ * type arguments. Changes inside class bodies and function bodies don't affect class hierarchies and don't drop anything. A change
+ * in a class header (supertypes, type parameters) drops only the entries that depend on the file of the changed class. Any other
+ * change outside of bodies (directives, top-level declarations added, removed or renamed) may change what names resolve to in other
+ * libraries, so it clears everything.
+ * <p/>
+ * Entries with unresolved supertypes depend on any file, as a new declaration anywhere may make them resolvable.
+ *
  * @author Fedor.Korotkov
  */
 public class DartClassResolveCache {
-  private final ConcurrentMap<DartClass, DartClassResolveResult> myMap = createWeakMap();
+  private static final class Entry {
+    @NotNull private final DartClassResolveResult myResult;
+    // null means that the entry depends on any file
+    @Nullable private volatile Set<VirtualFile> myFiles;
+
+    private Entry(@NotNull final DartClassResolveResult result) {
+      myResult = result;
+    }
+
+    private boolean dependsOn(@NotNull final VirtualFile file) {
+      final Set<VirtualFile> files = myFiles;
+      return files == null || files.contains(file);
+    }
+  }
+
+  private final ConcurrentMap<DartClass, Entry> myMap = createWeakMap();
+
+  private final AtomicLong myHits = new AtomicLong();
+  private final AtomicLong myMisses = new AtomicLong();
+  private final AtomicLong myEvictions = new AtomicLong();
 
   public static DartClassResolveCache getInstance(Project project) {
     ProgressIndicatorProvider.checkCanceled(); // We hope this method is being called often enough to cancel daemon processes smoothly
     return ServiceManager.getService(project, DartClassResolveCache.class);
   }
 
-  public DartClassResolveCache(@NotNull MessageBus messageBus) {
-    messageBus.connect().subscribe(PsiManagerImpl.ANY_PSI_CHANGE_TOPIC, new AnyPsiChangeListener.Adapter() {
+  public DartClassResolveCache(@NotNull final Project project) {
+    final MessageBusConnection connection = project.getMessageBus().connect();
+    connection.subscribe(PsiManagerImpl.ANY_PSI_CHANGE_TOPIC, new AnyPsiChangeListener.Adapter() {
       @Override
       public void beforePsiChanged(boolean isPhysical) {
-        myMap.clear();
+        // physical changes are handled by the tree change listener below, which knows what has changed
+        if (!isPhysical) {
+          evictIf(dartClass -> !dartClass.isPhysical());
+        }
       }
     });
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        clear();
+      }
+    });
+
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        onPsiChanged(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        onPsiChanged(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        onPsiChanged(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        onPsiChanged(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        if (event instanceof PsiTreeChangeEventImpl && ((PsiTreeChangeEventImpl)event).isGenericChange()) return;
+        onPsiChanged(event);
+      }
+
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        clear();
+      }
+    }, project);
   }
 
   private static <K, V> ConcurrentMap<K, V> createWeakMap() {
@@ -39,11 +120,104 @@ public class DartClassResolveCache {
   }
 
   public void put(@NotNull DartClass dartClass, @NotNull DartClassResolveResult result) {
-    myMap.put(dartClass, result);
+    myMap.put(dartClass, new Entry(result));
+  }
+
+  /**
+   * Called once the result for {@code dartClass} is complete; until then the entry is considered to depend on any file.
+   *
+   * @param files files of all classes the result was built from, {@code null} if some of them were not resolved
+   */
+  public void setDependencies(@NotNull DartClass dartClass, @Nullable Set<VirtualFile> files) {
+    final Entry entry = myMap.get(dartClass);
+    if (entry != null) {
+      entry.myFiles = files;
+    }
+  }
+
+  /**
+   * Files the cached result for {@code dartClass} depends on, {@code null} if it depends on any file or is not cached.
+   */
+  @Nullable
+  public Set<VirtualFile> getDependencies(@NotNull DartClass dartClass) {
+    final Entry entry = myMap.get(dartClass);
+    return entry == null ? null : entry.myFiles;
   }
 
   @Nullable
   public DartClassResolveResult get(DartClass dartClass) {
-    return myMap.get(dartClass);
+    final Entry entry = myMap.get(dartClass);
+    (entry == null ? myMisses : myHits).incrementAndGet();
+    return entry == null ? null : entry.myResult;
+  }
+
+  /**
+   * Human-readable hit/miss/eviction counters, for diagnostics.
+   */
+  @NotNull
+  public String getStatistics() {
+    return "class resolve cache: " + myHits.get() + " hits, " + myMisses.get() + " misses, " + myEvictions.get() + " evictions";
+  }
+
+  private void onPsiChanged(@NotNull final PsiTreeChangeEvent event) {
+    final PsiFile file = event.getFile();
+    if (file == null) {
+      clear();
+      return;
+    }
+
+    if (!file.getViewProvider().getLanguages().contains(DartLanguage.INSTANCE)) return;
+    if (isWhiteSpaceOrCommentChange(event)) return;
+
+    final PsiElement parent = event.getParent();
+    if (parent != null && PsiTreeUtil.getParentOfType(parent, false, DartClassBody.class, DartFunctionBody.class,
+                                                      DartFunctionExpressionBody.class) != null) {
+      return;
+    }
+
+    final DartClass dartClass = parent == null ? null : PsiTreeUtil.getParentOfType(parent, DartClass.class, false);
+    if (dartClass == null || isClassNameChange(dartClass, event)) {
+      clear();
+      return;
+    }
+
+    final VirtualFile virtualFile = file.getViewProvider().getVirtualFile();
+    evictIf(aClass -> {
+      final Entry entry = myMap.get(aClass);
+      return entry != null && entry.dependsOn(virtualFile);
+    });
+  }
+
+  private static boolean isWhiteSpaceOrCommentChange(@NotNull final PsiTreeChangeEvent event) {
+    boolean hasChildren = false;
+    for (PsiElement child : new PsiElement[]{event.getChild(), event.getOldChild(), event.getNewChild()}) {
+      if (child == null) continue;
+      if (!(child instanceof PsiWhiteSpace) && !(child instanceof PsiComment)) return false;
+      hasChildren = true;
+    }
+    return hasChildren;
+  }
+
+  private static boolean isClassNameChange(@NotNull final DartClass dartClass, @NotNull final PsiTreeChangeEvent event) {
+    final DartComponentName name = dartClass.getComponentName();
+    if (name == null) return true;
+
+    for (PsiElement element : new PsiElement[]{event.getParent(), event.getChild(), event.getOldChild(), event.getNewChild()}) {
+      if (element != null && PsiTreeUtil.isAncestor(name, element, false)) return true;
+    }
+    return false;
+  }
+
+  private void evictIf(@NotNull final Condition<DartClass> condition) {
+    for (DartClass dartClass : myMap.keySet()) {
+      if (condition.value(dartClass) && myMap.remove(dartClass) != null) {
+        myEvictions.incrementAndGet();
+      }
+    }
+  }
+
+  private void clear() {
+    myEvictions.addAndGet(myMap.size());
+    myMap.clear();
   }
 }
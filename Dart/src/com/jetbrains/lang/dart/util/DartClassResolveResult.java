@@ -1,12 +1,15 @@
 package com.jetbrains.lang.dart.util;
 
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.jetbrains.lang.dart.psi.*;
+import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Set;
 
 public class DartClassResolveResult implements Cloneable {
   public static final DartClassResolveResult EMPTY = new DartClassResolveResult(null);
@@ -40,23 +43,39 @@ public class DartClassResolveResult implements Cloneable {
       return new DartClassResolveResult(null);
     }
 
-    DartClassResolveResult resolveResult = DartClassResolveCache.getInstance(dartClass.getProject()).get(dartClass);
+    final DartClassResolveCache cache = DartClassResolveCache.getInstance(dartClass.getProject());
+    DartClassResolveResult resolveResult = cache.get(dartClass);
 
     if (resolveResult == null) {
       resolveResult = new DartClassResolveResult(dartClass);
-      DartClassResolveCache.getInstance(dartClass.getProject()).put(dartClass, resolveResult);
+      cache.put(dartClass, resolveResult);
+
+      // null means that some supertype is not resolved
+      Set<VirtualFile> files = new THashSet<>();
+      files.add(dartClass.getContainingFile().getViewProvider().getVirtualFile());
 
       final DartType superClass = dartClass.getSuperClass();
       if (superClass != null) {
         final DartClassResolveResult result = DartResolveUtil.resolveClassByType(superClass);
         result.specializeByParameters(superClass.getTypeArguments());
         resolveResult.merge(result.getSpecialization());
+        files = addDependencies(cache, files, result);
       }
       for (DartType dartType : DartResolveUtil.getImplementsAndMixinsList(dartClass)) {
         final DartClassResolveResult result = DartResolveUtil.resolveClassByType(dartType);
         result.specializeByParameters(dartType.getTypeArguments());
         resolveResult.merge(result.getSpecialization());
+        files = addDependencies(cache, files, result);
+      }
+
+      if (files != null) {
+        for (DartClassResolveResult typeArgument : resolveResult.mySpecialization.map.values()) {
+          files = addDependencies(cache, files, typeArgument);
+          if (files == null) break;
+        }
       }
+
+      cache.setDependencies(dartClass, files);
     }
 
     final DartClassResolveResult clone = resolveResult.clone();
@@ -64,6 +83,25 @@ public class DartClassResolveResult implements Cloneable {
     return clone;
   }
 
+  /**
+   * Adds files that {@code result} depends on to {@code files}, returns {@code null} if it depends on any file.
+   */
+  @Nullable
+  private static Set<VirtualFile> addDependencies(@NotNull final DartClassResolveCache cache,
+                                                  @Nullable final Set<VirtualFile> files,
+                                                  @Nullable final DartClassResolveResult result) {
+    if (files == null) return null;
+
+    final DartClass dartClass = result == null ? null : result.getDartClass();
+    if (dartClass == null) return null;
+
+    final Set<VirtualFile> classDependencies = cache.getDependencies(dartClass);
+    if (classDependencies == null) return null;
+
+    files.addAll(classDependencies);
+    return files;
+  }
+
   private void merge(@NotNull final DartGenericSpecialization otherSpecializations) {
     for (String key : otherSpecializations.map.keySet()) {
       mySpecialization.map.put(key, otherSpecializations.map.get(key));
@@ -0,0 +1,78 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import gnu.trove.THashSet;
+import junit.framework.TestCase;
+
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Updates {@link DartFilesWithErrors} with random errors of a project of 50000 files and checks folder counts and hash against
+ * a plain set of file paths.
+ */
+public class DartFilesWithErrorsTest extends TestCase {
+
+  private static final int FOLDERS = 500;
+  private static final int FILES_PER_FOLDER = 100;
+  private static final int UPDATES = 200000;
+
+  private static String getFolderPath(final int folder) {
+    return "/project/lib/src" + (folder % 10) + "/sub" + folder;
+  }
+
+  private static String getFilePath(final int folder, final int file) {
+    return getFolderPath(folder) + "/file" + file + ".dart";
+  }
+
+  public void testFolderCounts() {
+    final DartFilesWithErrors filesWithErrors = new DartFilesWithErrors();
+    filesWithErrors.update("/project/lib/a.dart", true);
+    filesWithErrors.update("/project/lib/src/b.dart", true);
+    filesWithErrors.update("/project/lib/src/b.dart", true);
+
+    assertEquals(2, filesWithErrors.size());
+    assertEquals(2, filesWithErrors.getFilesWithErrorsCount("/project"));
+    assertEquals(2, filesWithErrors.getFilesWithErrorsCount("/project/lib"));
+    assertEquals(1, filesWithErrors.getFilesWithErrorsCount("/project/lib/src"));
+    assertEquals(0, filesWithErrors.getFilesWithErrorsCount("/project/test"));
+    assertTrue(filesWithErrors.isFileWithErrors("/project/lib/src/b.dart"));
+
+    assertTrue(filesWithErrors.update("/project/lib/src/b.dart", false));
+    assertFalse(filesWithErrors.update("/project/lib/src/b.dart", false));
+    assertEquals(1, filesWithErrors.getFilesWithErrorsCount("/project/lib"));
+    assertEquals(0, filesWithErrors.getFilesWithErrorsCount("/project/lib/src"));
+    assertFalse(filesWithErrors.isFileWithErrors("/project/lib/src/b.dart"));
+
+    filesWithErrors.clear();
+    assertEquals(0, filesWithErrors.getFilesWithErrorsCount("/project"));
+    assertEquals(0, filesWithErrors.getHash());
+  }
+
+  public void testLargeProject() {
+    final DartFilesWithErrors filesWithErrors = new DartFilesWithErrors();
+    final Set<String> expected = new THashSet<>();
+    final Random random = new Random(42);
+
+    for (int i = 0; i < UPDATES; i++) {
+      final String filePath = getFilePath(random.nextInt(FOLDERS), random.nextInt(FILES_PER_FOLDER));
+      final boolean hasErrors = random.nextInt(4) == 0;
+      final boolean changed = hasErrors ? expected.add(filePath) : expected.remove(filePath);
+      assertEquals(changed, filesWithErrors.update(filePath, hasErrors));
+    }
+
+    assertEquals(expected.size(), filesWithErrors.size());
+    assertEquals(expected.hashCode(), filesWithErrors.getHash());
+    assertEquals(expected.size(), filesWithErrors.getFilesWithErrorsCount("/project"));
+
+    for (int folder = 0; folder < FOLDERS; folder++) {
+      int count = 0;
+      for (int file = 0; file < FILES_PER_FOLDER; file++) {
+        final String filePath = getFilePath(folder, file);
+        final boolean hasErrors = expected.contains(filePath);
+        assertEquals(hasErrors, filesWithErrors.isFileWithErrors(filePath));
+        if (hasErrors) count++;
+      }
+      assertEquals(count, filesWithErrors.getFilesWithErrorsCount(getFolderPath(folder)));
+    }
+  }
+}
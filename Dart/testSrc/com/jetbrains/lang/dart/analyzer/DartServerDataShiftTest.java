@@ -0,0 +1,214 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartRegion;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Applies random edits to a text made of distinct words, each word being a region, and checks that regions kept by
+ * {@link DartRegionShiftUtil} still point to the same words.
+ */
+public class DartServerDataShiftTest extends TestCase {
+
+  private static final int ITERATIONS = 500;
+  private static final int EDITS_PER_ITERATION = 40;
+  private static final int WORDS = 30;
+
+  private static class Word {
+    private final String myText;
+    private int myOffset;
+    private boolean myTouched;
+
+    private Word(@NotNull final String text, final int offset) {
+      myText = text;
+      myOffset = offset;
+    }
+  }
+
+  private static class Edit {
+    private final int myOffset;
+    private final int myOldLength;
+    private final String myNewText;
+
+    private Edit(final int offset, final int oldLength, @NotNull final String newText) {
+      myOffset = offset;
+      myOldLength = oldLength;
+      myNewText = newText;
+    }
+
+    private boolean touches(@NotNull final Word word) {
+      final int wordEnd = word.myOffset + word.myText.length();
+      if (myOldLength == 0) return word.myOffset < myOffset && myOffset < wordEnd;
+      return myOffset < wordEnd && word.myOffset < myOffset + myOldLength;
+    }
+  }
+
+  public void testDeletingTouchedRandomEdits() {
+    final Random random = new Random(42);
+
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      final StringBuilder text = new StringBuilder();
+      final List<Word> words = createWords(text);
+      List<DartRegion> regions = new ArrayList<>();
+      for (Word word : words) {
+        regions.add(new DartRegion(word.myOffset, word.myText.length()));
+      }
+
+      for (int i = 0; i < EDITS_PER_ITERATION; i++) {
+        final Edit edit = randomEdit(random, text);
+        applyToWords(words, edit);
+        text.replace(edit.myOffset, edit.myOffset + edit.myOldLength, edit.myNewText);
+        regions = DartServerData.shiftRegionsDeletingTouched(regions, edit.myOffset, edit.myOldLength, edit.myNewText.length());
+
+        int regionIndex = 0;
+        for (Word word : words) {
+          if (word.myTouched) continue;
+
+          assertTrue("untouched region deleted: " + word.myText, regionIndex < regions.size());
+          final DartRegion region = regions.get(regionIndex++);
+          assertEquals(word.myOffset, region.getOffset());
+          assertEquals(word.myText, text.substring(region.getOffset(), region.getOffset() + region.getLength()));
+        }
+        assertEquals("touched region kept", regionIndex, regions.size());
+      }
+    }
+  }
+
+  public void testUpdatingTouchedRandomEdits() {
+    final Random random = new Random(24);
+
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      final StringBuilder text = new StringBuilder();
+      final List<Word> words = createWords(text);
+      final List<long[]> regions = new ArrayList<>(); // {word index, packed range}
+      for (int i = 0; i < words.size(); i++) {
+        regions.add(new long[]{i, DartRegionShiftUtil.pack(words.get(i).myOffset, words.get(i).myText.length())});
+      }
+
+      for (int i = 0; i < EDITS_PER_ITERATION; i++) {
+        final Edit edit = randomEdit(random, text);
+        applyToWords(words, edit);
+        text.replace(edit.myOffset, edit.myOffset + edit.myOldLength, edit.myNewText);
+
+        final List<long[]> newRegions = new ArrayList<>();
+        for (long[] region : regions) {
+          final long shifted = DartRegionShiftUtil.shiftUpdatingTouched(DartRegionShiftUtil.offset(region[1]),
+                                                                        DartRegionShiftUtil.length(region[1]),
+                                                                        edit.myOffset, edit.myOldLength, edit.myNewText.length());
+          if (shifted != DartRegionShiftUtil.DELETED) {
+            newRegions.add(new long[]{region[0], shifted});
+          }
+        }
+        regions.clear();
+        regions.addAll(newRegions);
+
+        int previousEnd = 0;
+        for (long[] region : regions) {
+          final int offset = DartRegionShiftUtil.offset(region[1]);
+          final int length = DartRegionShiftUtil.length(region[1]);
+          assertTrue("regions overlap or out of order", previousEnd <= offset);
+          assertTrue("empty region kept", length > 0);
+          assertTrue("region out of text", offset + length <= text.length());
+          previousEnd = offset + length;
+
+          final Word word = words.get((int)region[0]);
+          if (!word.myTouched) {
+            assertEquals(word.myText, text.substring(offset, offset + length));
+          }
+        }
+
+        for (int w = 0; w < words.size(); w++) {
+          if (!words.get(w).myTouched) {
+            boolean found = false;
+            for (long[] region : regions) {
+              found |= region[0] == w;
+            }
+            assertTrue("untouched region deleted: " + words.get(w).myText, found);
+          }
+        }
+      }
+    }
+  }
+
+  public void testUpdatingTouchedAtRegionBoundaries() {
+    // replacement at the region start keeps the region anchored
+    assertEquals(DartRegionShiftUtil.pack(0, 3), DartRegionShiftUtil.shiftUpdatingTouched(0, 3, 0, 1, 1));
+    assertEquals(DartRegionShiftUtil.pack(5, 4), DartRegionShiftUtil.shiftUpdatingTouched(5, 3, 5, 1, 2));
+    // replacement at the region end stays in the region
+    assertEquals(DartRegionShiftUtil.pack(0, 4), DartRegionShiftUtil.shiftUpdatingTouched(0, 3, 2, 1, 2));
+    // insertion at the region start shifts it, insertion at the end doesn't change it
+    assertEquals(DartRegionShiftUtil.pack(1, 3), DartRegionShiftUtil.shiftUpdatingTouched(0, 3, 0, 0, 1));
+    assertEquals(DartRegionShiftUtil.pack(0, 3), DartRegionShiftUtil.shiftUpdatingTouched(0, 3, 3, 0, 1));
+    // replacement of the whole region deletes it
+    assertEquals(DartRegionShiftUtil.DELETED, DartRegionShiftUtil.shiftUpdatingTouched(0, 3, 0, 3, 1));
+  }
+
+  public void testTargetOffsetRandomEdits() {
+    final Random random = new Random(7);
+
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      final StringBuilder text = new StringBuilder();
+      final List<Word> words = createWords(text);
+      final int[] targetOffsets = new int[words.size()];
+      for (int i = 0; i < words.size(); i++) {
+        targetOffsets[i] = words.get(i).myOffset;
+      }
+
+      for (int i = 0; i < EDITS_PER_ITERATION; i++) {
+        final Edit edit = randomEdit(random, text);
+        applyToWords(words, edit);
+        text.replace(edit.myOffset, edit.myOffset + edit.myOldLength, edit.myNewText);
+
+        for (int w = 0; w < words.size(); w++) {
+          targetOffsets[w] = DartRegionShiftUtil.shiftTargetOffset(targetOffsets[w], edit.myOffset, edit.myOldLength,
+                                                                   edit.myNewText.length());
+          if (!words.get(w).myTouched) {
+            assertEquals(words.get(w).myOffset, targetOffsets[w]);
+          }
+        }
+      }
+    }
+  }
+
+  @NotNull
+  private static List<Word> createWords(@NotNull final StringBuilder text) {
+    final List<Word> words = new ArrayList<>();
+    for (int i = 0; i < WORDS; i++) {
+      final String word = "<" + i + ">";
+      words.add(new Word(word, text.length()));
+      text.append(word).append(' ');
+    }
+    return words;
+  }
+
+  @NotNull
+  private static Edit randomEdit(@NotNull final Random random, @NotNull final CharSequence text) {
+    final int offset = random.nextInt(text.length() + 1);
+    final int oldLength = random.nextInt(3) == 0 ? 0 : random.nextInt(Math.min(6, text.length() - offset) + 1);
+    final int newLength = random.nextInt(3) == 0 ? 0 : random.nextInt(6);
+    final StringBuilder newText = new StringBuilder();
+    for (int i = 0; i < newLength; i++) {
+      newText.append(random.nextBoolean() ? 'x' : ' ');
+    }
+    return new Edit(offset, oldLength, newText.toString());
+  }
+
+  private static void applyToWords(@NotNull final List<Word> words, @NotNull final Edit edit) {
+    if (edit.myOldLength == 0 && edit.myNewText.isEmpty()) return;
+
+    for (Word word : words) {
+      if (word.myTouched) continue;
+
+      if (edit.touches(word)) {
+        word.myTouched = true;
+      }
+      else if (edit.myOffset + edit.myOldLength <= word.myOffset) {
+        word.myOffset += edit.myNewText.length() - edit.myOldLength;
+      }
+    }
+  }
+}
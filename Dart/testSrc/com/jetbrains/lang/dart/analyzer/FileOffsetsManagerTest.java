@@ -0,0 +1,60 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.common.cache.CacheStats;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class FileOffsetsManagerTest extends DartCodeInsightFixtureTestCase {
+
+  @NotNull
+  private VirtualFile createFile(@NotNull final String text) throws IOException {
+    final VirtualFile file = myFixture.getTempDirFixture().createFile(getTestName(true) + ".dart");
+    // saved as is, without line separators conversion
+    WriteAction.run(() -> VfsUtil.saveText(file, text));
+    return file;
+  }
+
+  public void testSingleLookupPerConversion() throws IOException {
+    final VirtualFile file = createFile("a\r\nb\r\nc");
+    final FileOffsetsManager manager = FileOffsetsManager.getInstance();
+    final CacheStats before = manager.getCacheStats();
+
+    assertEquals(2, manager.getConvertedOffset(file, 3));
+    assertEquals("[0, 2, 4]", Arrays.toString(manager.getConvertedOffsets(file, new int[]{0, 3, 6})));
+    assertEquals(6, manager.getOriginalOffset(file, 4));
+
+    final CacheStats stats = manager.getCacheStats().minus(before);
+    assertEquals(3, stats.requestCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.loadCount());
+  }
+
+  public void testInvalidatedOnDocumentChange() throws IOException {
+    final VirtualFile file = createFile("a\r\nb");
+    final FileOffsetsManager manager = FileOffsetsManager.getInstance();
+    assertEquals(2, manager.getConvertedOffset(file, 3));
+    final long cacheSize = manager.getCacheSize();
+
+    final Document document = FileDocumentManager.getInstance().getDocument(file);
+    assertNotNull(document);
+    WriteAction.run(() -> {
+      document.insertString(0, "\n");
+      FileDocumentManager.getInstance().saveDocument(document);
+    });
+
+    final CacheStats before = manager.getCacheStats();
+    // the document is saved with the line separator of the file
+    assertEquals(3, manager.getConvertedOffset(file, 5));
+    assertEquals(1, manager.getCacheStats().minus(before).missCount());
+    // offsets of the previous file content are dropped
+    assertEquals(cacheSize, manager.getCacheSize());
+  }
+}
@@ -0,0 +1,100 @@
+package com.jetbrains.lang.dart.coverage;
+
+import com.google.gson.JsonSyntaxException;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.rt.coverage.data.LineData;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static com.jetbrains.lang.dart.coverage.DartCoverageData.NO_DATA;
+
+public class DartCoverageDataTest extends DartCodeInsightFixtureTestCase {
+
+  @Override
+  protected String getBasePath() {
+    return "/coverage";
+  }
+
+  @NotNull
+  private DartCoverageData load(@NotNull final String fileName) throws IOException {
+    try (Reader reader = new FileReader(new File(getTestDataPath(), fileName))) {
+      return DartCoverageData.load(reader);
+    }
+  }
+
+  private static void assertLineHits(@NotNull final DartCoverageData data, @NotNull final String source, final int... expected) {
+    final int[] lineHits = data.getLineHits().get(source);
+    assertNotNull(source, lineHits);
+    for (int line = 0; line < lineHits.length; line++) {
+      assertEquals(source + ":" + line, line < expected.length ? expected[line] : NO_DATA, lineHits[line]);
+    }
+  }
+
+  public void testJson() throws IOException {
+    final DartCoverageData data = load("hits.json");
+    assertEquals(3, data.getLineHits().size());
+    // hits of the same source are summed up, "from-to" ranges and "line" strings are accepted
+    assertLineHits(data, "package:foo/a.dart", NO_DATA, 3, NO_DATA, 5, NO_DATA, 1, 1);
+    // "hits" before "source"
+    assertLineHits(data, "package:foo/b.dart", NO_DATA, NO_DATA, 4, NO_DATA, NO_DATA, NO_DATA, NO_DATA, NO_DATA, NO_DATA, 1);
+    assertLineHits(data, "package:foo/empty.dart");
+  }
+
+  public void testLcov() throws IOException {
+    final DartCoverageData data = load("hits.info");
+    assertEquals(2, data.getLineHits().size());
+    // records of the same source are summed up, DA records outside of SF ... end_of_record and malformed DA records are ignored
+    assertLineHits(data, "/project/lib/a.dart", NO_DATA, 5, 0, NO_DATA, 1);
+    assertLineHits(data, "/project/lib/b.dart", NO_DATA, NO_DATA, 4);
+  }
+
+  public void testMalformedJson() throws IOException {
+    try {
+      DartCoverageData.load(new StringReader("{\"coverage\": [{\"source\": \"package:foo/a.dart\", \"hits\": [1, \"x\"]}]}"));
+      fail("JsonSyntaxException expected");
+    }
+    catch (JsonSyntaxException ignored) {
+    }
+
+    try {
+      DartCoverageData.load(new StringReader("{\"coverage\": [{\"source\": \"package:foo/a.dart\", \"hits\": [1, 2"));
+      fail("IOException expected");
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  public void testNotCoverageData() throws IOException {
+    assertEmpty(DartCoverageData.load(new StringReader("")).getLineHits().keySet());
+    assertEmpty(DartCoverageData.load(new StringReader("not a tracefile\n")).getLineHits().keySet());
+    assertEmpty(DartCoverageData.load(new StringReader("{\"type\": \"CodeCoverage\"}")).getLineHits().keySet());
+  }
+
+  public void testCreateLines() {
+    final LineData[] lines = DartCoverageRunner.createLines(new int[]{NO_DATA, 5, 0, NO_DATA, 1, NO_DATA, NO_DATA});
+    assertEquals(5, lines.length);
+    assertNull(lines[0]);
+    assertEquals(5, lines[1].getHits());
+    assertEquals(0, lines[2].getHits());
+    assertNull(lines[3]);
+    assertEquals(1, lines[4].getHits());
+
+    final LineData[] noLines = DartCoverageRunner.createLines(new int[]{NO_DATA, NO_DATA});
+    assertEquals(1, noLines.length);
+    assertNull(noLines[0]);
+  }
+
+  public void testFileForUri() {
+    // absolute paths from LCOV input and SDK internals don't need the analysis server
+    final String path = FileUtil.toSystemDependentName(getTestDataPath() + "/a.dart");
+    assertEquals(FileUtil.toSystemIndependentName(path), DartCoverageRunner.getFileForUri(getProject(), "unused", path));
+    assertNull(DartCoverageRunner.getFileForUri(getProject(), "unused", "dart:_builtin"));
+    assertNull(DartCoverageRunner.getFileForUri(getProject(), "unused", "dart:core-patch/core_patch.dart"));
+  }
+}
@@ -1,12 +1,26 @@
 package com.jetbrains.lang.dart.folding;
 
 import com.intellij.codeInsight.folding.CodeFoldingSettings;
+import com.intellij.lang.folding.FoldingDescriptor;
+import com.intellij.lang.folding.LanguageFolding;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.Consumer;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.psi.DartClass;
+import com.jetbrains.lang.dart.psi.DartComponent;
+import com.jetbrains.lang.dart.psi.DartFunctionBody;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Set;
+
 public class DartFoldingTest extends DartCodeInsightFixtureTestCase {
 
   private void doTest() {
@@ -128,4 +142,34 @@ public class DartFoldingTest extends DartCodeInsightFixtureTestCase {
   public void testNewExpression() {
     doTest();
   }
+
+  public void testQuickPassInLargeFile() {
+    final StringBuilder text = new StringBuilder("import 'a.dart';\nimport 'b.dart';\n\n");
+    for (int i = 0; text.length() <= DartFoldingBuilder.QUICK_PASS_FULL_PSI_MAX_LENGTH; i++) {
+      text.append("class C").append(i).append(" {\n")
+        .append("  /** doc */\n")
+        .append("  void foo() {\n    var m = {\n      1: new List<int>()\n    };\n  }\n")
+        .append("}\n");
+    }
+    myFixture.configureByText("foo.dart", text.toString());
+
+    final PsiFile file = myFixture.getFile();
+    final Document document = myFixture.getEditor().getDocument();
+    final FoldingDescriptor[] quick = LanguageFolding.buildFoldingDescriptors(new DartFoldingBuilder(), file, document, true);
+    for (DartClass dartClass : PsiTreeUtil.getChildrenOfTypeAsList(file, DartClass.class)) {
+      for (DartComponent method : dartClass.getMethods()) {
+        final DartFunctionBody functionBody = PsiTreeUtil.getChildOfType(method, DartFunctionBody.class);
+        assertFalse(((LazyParseableElement)functionBody.getBlock().getNode()).isParsed());
+      }
+    }
+
+    final FoldingDescriptor[] full = LanguageFolding.buildFoldingDescriptors(new DartFoldingBuilder(), file, document, false);
+    final Set<TextRange> fullRanges = ContainerUtil.map2Set(full, FoldingDescriptor::getRange);
+    final Set<TextRange> quickRanges = ContainerUtil.map2Set(quick, FoldingDescriptor::getRange);
+    assertTrue(fullRanges.containsAll(quickRanges));
+    // imports; class body, doc comment and function body of each class. Map literal and type arguments only in the full pass
+    final int classCount = StringUtil.getOccurrenceCount(text.toString(), "class C");
+    assertEquals(1 + 3 * classCount, quickRanges.size());
+    assertEquals(1 + 5 * classCount, fullRanges.size());
+  }
 }
@@ -0,0 +1,72 @@
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.util.io.DataExternalizer;
+import com.jetbrains.lang.dart.DartComponentType;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class DartComponentInfoExternalizerTest extends TestCase {
+
+  public void testSingleInfoRoundTrip() throws IOException {
+    final DartComponentInfoExternalizer externalizer = new DartComponentInfoExternalizer();
+    for (DartComponentType type : DartComponentType.values()) {
+      assertEquals(new DartComponentInfo(type, null), roundTrip(externalizer, new DartComponentInfo(type, null)));
+      assertEquals(new DartComponentInfo(type, "my.lib"), roundTrip(externalizer, new DartComponentInfo(type, "my.lib")));
+    }
+    assertEquals(new DartComponentInfo(null, "my.lib"), roundTrip(externalizer, new DartComponentInfo(null, "my.lib")));
+    assertEquals(new DartComponentInfo(null, null), roundTrip(externalizer, new DartComponentInfo(null, null)));
+  }
+
+  public void testAllTypesFitIntoHeader() {
+    assertTrue(DartComponentType.values().length < 1 << DartComponentInfoExternalizer.TYPE_KEY_BITS);
+    for (DartComponentType type : DartComponentType.values()) {
+      final int header = DartComponentInfoExternalizer.packHeader(type, 3);
+      assertEquals(type, DartComponentInfoExternalizer.unpackComponentType(header));
+      assertEquals(3, DartComponentInfoExternalizer.unpackLibraryIndex(header));
+    }
+  }
+
+  public void testListRoundTrip() throws IOException {
+    final DartComponentInfoListExternalizer externalizer = new DartComponentInfoListExternalizer();
+    assertEquals(Collections.<DartComponentInfo>emptyList(), roundTrip(externalizer, Collections.emptyList()));
+
+    final List<DartComponentInfo> infos = new ArrayList<>();
+    for (DartComponentType type : DartComponentType.values()) {
+      infos.add(new DartComponentInfo(type, "lib1"));
+      infos.add(new DartComponentInfo(type, null));
+      infos.add(new DartComponentInfo(type, "lib2"));
+    }
+    infos.add(new DartComponentInfo(null, "lib3"));
+    assertEquals(infos, roundTrip(externalizer, infos));
+  }
+
+  public void testLibraryNameWrittenOncePerList() throws IOException {
+    final DartComponentInfoListExternalizer externalizer = new DartComponentInfoListExternalizer();
+    final String libraryName = "some.rather.long.library.name";
+    final List<DartComponentInfo> one = Collections.singletonList(new DartComponentInfo(DartComponentType.CLASS, libraryName));
+    final List<DartComponentInfo> many = Arrays.asList(new DartComponentInfo(DartComponentType.CLASS, libraryName),
+                                                       new DartComponentInfo(DartComponentType.METHOD, libraryName),
+                                                       new DartComponentInfo(DartComponentType.FIELD, libraryName));
+    assertEquals(save(externalizer, one).length + 2, save(externalizer, many).length);
+  }
+
+  private static <T> T roundTrip(@NotNull final DataExternalizer<T> externalizer, @NotNull final T value) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(save(externalizer, value)));
+    final T result = externalizer.read(in);
+    assertEquals("unread bytes", 0, in.available());
+    return result;
+  }
+
+  @NotNull
+  private static <T> byte[] save(@NotNull final DataExternalizer<T> externalizer, @NotNull final T value) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    externalizer.save(new DataOutputStream(bytes), value);
+    return bytes.toByteArray();
+  }
+}
@@ -273,6 +273,27 @@ public class DartTestEventsConverterTest extends BaseSMTRunnerTestCase {
     runTest(events, signals, new int[]{});
   }
 
+  public void testEventsForUnknownTestIgnored() {
+    String[] events = {
+      "{'count':1,'type':'allSuites','time':0}\n",
+      "{'suite':{'id':0,'platform':'vm','path':'test/next_test.dart'},'type':'suite','time':0}\n",
+      "{'group':{'id':2,'suiteID':0,'parentID':null,'name':null,'metadata':{'skip':false,'skipReason':null},'testCount':1},'type':'group','time':238}\n",
+      "{'testID':99,'message':'lost','type':'print','time':240}\n",
+      "{'test':{'id':3,'name':'passing test','suiteID':0,'groupIDs':[2],'metadata':{'skip':false,'skipReason':null}},'type':'testStart','time':240}\n",
+      "{'testID':99,'error':'lost','stackTrace':'','isFailure':false,'type':'error','time':241}\n",
+      "{'testID':3,'result':'success','hidden':false,'type':'testDone','time':242}\n",
+      "{'testID':99,'result':'success','hidden':false,'type':'testDone','time':243}\n",
+      "{'success':true,'type':'done','time':244}\n",
+    };
+    String[] signals = {
+      "suite started next_test.dart",
+      "start passing test",
+      "finish passing test",
+      "suite finished next_test.dart"
+    };
+    runTest(events, signals, new int[]{});
+  }
+
   public void testGroupsDone() {
     String[] events = {
       "{'protocolVersion':'0.1.0','runnerVersion':'0.12.10','type':'start','time':0}\n",
@@ -0,0 +1,65 @@
+package com.jetbrains.lang.dart.parser;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.DartLanguage;
+import com.jetbrains.lang.dart.DartTokenTypes;
+import com.jetbrains.lang.dart.psi.DartClass;
+import org.jetbrains.annotations.NotNull;
+
+public class DartLazyClassMembersTest extends DartCodeInsightFixtureTestCase {
+
+  private void doTypingTest(@NotNull final String text, @NotNull final String typed) {
+    myFixture.configureByText("foo.dart", text);
+    myFixture.type(typed);
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+
+    final PsiFile file = myFixture.getFile();
+    final PsiFile expected = PsiFileFactory.getInstance(getProject()).createFileFromText("bar.dart", DartLanguage.INSTANCE, file.getText());
+    assertEquals(DebugUtil.psiToString(expected, false), DebugUtil.psiToString(file, false));
+  }
+
+  public void testParsedOnDemand() {
+    final PsiFile file = PsiFileFactory.getInstance(getProject())
+      .createFileFromText("foo.dart", DartLanguage.INSTANCE, "class A {\n  int a;\n  foo() => a;\n}\nclass B {}");
+    final ASTNode classBody = file.getNode().findChildByType(DartTokenTypes.CLASS_DEFINITION).findChildByType(DartTokenTypes.CLASS_BODY);
+    final ASTNode classMembers = classBody.findChildByType(DartTokenTypes.CLASS_MEMBERS);
+    assertInstanceOf(classMembers, LazyParseableElement.class);
+    assertFalse(((LazyParseableElement)classMembers).isParsed());
+
+    final DartClass dartClass = PsiTreeUtil.getChildOfType(file, DartClass.class);
+    assertNotNull(dartClass);
+    assertEquals(1, dartClass.getFields().size());
+    assertEquals(1, dartClass.getMethods().size());
+    assertTrue(((LazyParseableElement)classMembers).isParsed());
+  }
+
+  public void testTypingBetweenMembers() {
+    doTypingTest("class A {\n  int a;\n  <caret>\n  foo() => a;\n}", "int b;");
+  }
+
+  public void testTypingFirstMember() {
+    doTypingTest("class A {<caret>\n  foo() => a;\n}", "\n  int b;");
+  }
+
+  public void testTypingUnbalancedBrace() {
+    doTypingTest("class A {\n  int a;\n  foo() <caret>\n}\nclass B {}", "{");
+  }
+
+  public void testTypingInEmptyClass() {
+    doTypingTest("class A {<caret>}", "int a;");
+  }
+
+  public void testDeletingAllMembers() {
+    myFixture.configureByText("foo.dart", "class A {<selection>\n  int a;\n</selection>}");
+    myFixture.type("\b");
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    assertEquals(0, PsiTreeUtil.getChildOfType(myFixture.getFile(), DartClass.class).getFields().size());
+  }
+}
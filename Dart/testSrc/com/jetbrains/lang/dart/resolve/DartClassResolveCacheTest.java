@@ -0,0 +1,54 @@
+package com.jetbrains.lang.dart.resolve;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.psi.DartClass;
+import com.jetbrains.lang.dart.psi.DartClassResolveCache;
+import com.jetbrains.lang.dart.util.DartClassResolveResult;
+import org.jetbrains.annotations.NotNull;
+
+public class DartClassResolveCacheTest extends DartCodeInsightFixtureTestCase {
+
+  @NotNull
+  private static DartClass findClass(@NotNull final PsiFile file) {
+    final DartClass dartClass = PsiTreeUtil.findChildOfType(file, DartClass.class);
+    assertNotNull(file.getName(), dartClass);
+    return dartClass;
+  }
+
+  private void insertString(@NotNull final PsiFile file, @NotNull final String anchor, @NotNull final String text) {
+    final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    final Document document = documentManager.getDocument(file);
+    assertNotNull(document);
+    final int offset = document.getText().indexOf(anchor) + anchor.length();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.insertString(offset, text);
+      documentManager.commitDocument(document);
+    });
+  }
+
+  public void testSuperclassHeaderChangeEvictsSubclass() {
+    final PsiFile baseFile = myFixture.addFileToProject("base.dart", "class Base {\n  int foo() => 1;\n}\n");
+    final PsiFile subFile = myFixture.addFileToProject("sub.dart", "import 'base.dart';\nclass Sub extends Base {}\n");
+    final DartClass subClass = findClass(subFile);
+    final DartClassResolveCache cache = DartClassResolveCache.getInstance(getProject());
+
+    DartClassResolveResult.create(subClass);
+    final DartClassResolveResult cached = cache.get(subClass);
+    assertNotNull(cached);
+    assertContainsElements(cache.getDependencies(subClass), baseFile.getVirtualFile());
+
+    insertString(baseFile, "class Base", "<T>");
+    assertNull(cache.get(subClass));
+
+    // recomputed against the changed superclass
+    DartClassResolveResult.create(subClass);
+    final DartClassResolveResult recomputed = cache.get(subClass);
+    assertNotNull(recomputed);
+    assertNotSame(cached, recomputed);
+  }
+}
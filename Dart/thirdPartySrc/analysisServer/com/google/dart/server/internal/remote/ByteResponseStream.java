@@ -19,17 +19,29 @@ import com.google.gson.JsonSyntaxException;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * An {@link InputStream} based implementation of {@link ResponseStream}. Each line must contain
  * exactly one complete JSON object.
+ * <p>
+ * Lines are kept as raw UTF-8 bytes, so that large notifications can be decoded by a streaming
+ * parser without creating a {@link String} for the whole line.
  *
  * @coverage dart.server.remote
  */
 public class ByteResponseStream implements ResponseStream {
   private class LinesReaderThread extends Thread {
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private int readPosition;
+    private int readLimit;
+
+    private byte[] lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE];
+    private int lineLength;
+    private int linesSinceLargeLine;
+
     public LinesReaderThread() {
       setName("ByteResponseStream.LinesReaderThread");
       setDaemon(true);
@@ -38,15 +50,15 @@ public class ByteResponseStream implements ResponseStream {
     @Override
     public void run() {
       while (true) {
-        String line;
+        byte[] line;
         try {
-          line = reader.readLine();
+          line = readLine();
         } catch (IOException e) {
           line = null;
         }
         // check for EOF
         if (line == null) {
-          lineQueue.add(EOF_LINE);
+          lineQueue.add(EOF_BYTES);
 
           if (onStreamEndRunnable != null) {
             onStreamEndRunnable.run();
@@ -56,24 +68,90 @@ public class ByteResponseStream implements ResponseStream {
         }
         // debug output
         if (debugStream != null) {
-          debugStream.println(System.currentTimeMillis() + " <= " + line);
+          debugStream.println(System.currentTimeMillis() + " <= " + toDebugString(line));
         }
         // ignore non-JSON (debug) lines
-        if (!line.startsWith("{")) {
+        if (line.length == 0 || line[0] != '{') {
           continue;
         }
         // add a JSON line
         lineQueue.add(line);
       }
     }
+
+    /**
+     * Returns the next line without the line terminator, or {@code null} at the end of the stream.
+     */
+    private byte[] readLine() throws IOException {
+      lineLength = 0;
+      while (true) {
+        if (readPosition == readLimit) {
+          int count = stream.read(readBuffer, 0, readBuffer.length);
+          if (count == -1) {
+            return lineLength == 0 ? null : copyLine();
+          }
+          readPosition = 0;
+          readLimit = count;
+        }
+        int end = readPosition;
+        while (end < readLimit && readBuffer[end] != '\n') {
+          end++;
+        }
+        appendToLine(readPosition, end);
+        if (end < readLimit) {
+          readPosition = end + 1;
+          return copyLine();
+        }
+        readPosition = readLimit;
+      }
+    }
+
+    private void appendToLine(int from, int to) {
+      int count = to - from;
+      if (lineLength + count > lineBuffer.length) {
+        lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, lineLength + count));
+      }
+      System.arraycopy(readBuffer, from, lineBuffer, lineLength, count);
+      lineLength += count;
+    }
+
+    private byte[] copyLine() {
+      int length = lineLength > 0 && lineBuffer[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+      byte[] line = Arrays.copyOf(lineBuffer, length);
+      if (lineBuffer.length > MAX_RETAINED_LINE_BUFFER_SIZE) {
+        // huge notifications come in series (e.g. highlights, navigation and outline of a large file), so a grown buffer is
+        // dropped only after a number of lines that would fit into a small one
+        if (lineLength > MAX_RETAINED_LINE_BUFFER_SIZE) {
+          linesSinceLargeLine = 0;
+        } else if (++linesSinceLargeLine >= LARGE_LINE_BUFFER_RETAINED_LINES) {
+          lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE];
+          linesSinceLargeLine = 0;
+        }
+      }
+      return line;
+    }
   }
 
   public static final String EOF_LINE = "EOF line";
 
+  private static final byte[] EOF_BYTES = new byte[0];
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  private static final int INITIAL_LINE_BUFFER_SIZE = 8 * 1024;
+  private static final int MAX_RETAINED_LINE_BUFFER_SIZE = 1024 * 1024;
+  private static final int LARGE_LINE_BUFFER_RETAINED_LINES = 16;
+
+  /**
+   * Only the beginning of each line is printed to the debug stream, there is no need to decode
+   * multi-megabyte notifications for that.
+   */
+  private static final int MAX_DEBUG_LINE_LENGTH = 1024;
+
   /**
-   * The {@link BufferedReader} to read JSON strings from.
+   * The byte stream to read JSON lines from. It is read in bulk into a buffer of the reader thread,
+   * not byte by byte.
    */
-  private final BufferedReader reader;
+  private final InputStream stream;
 
   /**
    * The {@link DebugPrintStream} to print all lines to.
@@ -82,9 +160,9 @@ public class ByteResponseStream implements ResponseStream {
   private final Runnable onStreamEndRunnable;
 
   /**
-   * The queue of lines.
+   * The queue of lines, as UTF-8 bytes.
    */
-  private final BlockingQueue<String> lineQueue = new LinkedBlockingQueue<String>();
+  private final BlockingQueue<byte[]> lineQueue = new LinkedBlockingQueue<byte[]>();
 
   /**
    * Initializes a newly created response stream.
@@ -93,7 +171,7 @@ public class ByteResponseStream implements ResponseStream {
    * @param debugStream the {@link PrintStream} to print all lines to, may be {@code null}
    */
   public ByteResponseStream(InputStream stream, DebugPrintStream debugStream, Runnable onStreamEndRunnable) {
-    reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    this.stream = stream;
     this.debugStream = debugStream;
     this.onStreamEndRunnable = onStreamEndRunnable;
     new LinesReaderThread().start();
@@ -105,16 +183,37 @@ public class ByteResponseStream implements ResponseStream {
 
   @Override
   public JsonObject take() throws Exception {
-    String line = lineQueue.take();
-    if (line == EOF_LINE) {
+    byte[] line = takeBytes();
+    return line == null ? null : parse(line);
+  }
+
+  @Override
+  public byte[] takeBytes() throws Exception {
+    byte[] line = lineQueue.take();
+    if (line == EOF_BYTES) {
       lineQueue.add(line);
       return null;
     }
+    return line;
+  }
+
+  /**
+   * Parses the given UTF-8 encoded JSON object.
+   */
+  public static JsonObject parse(byte[] line) {
     try {
-      return (JsonObject) new JsonParser().parse(line);
+      Reader reader = new InputStreamReader(new ByteArrayInputStream(line), StandardCharsets.UTF_8);
+      return (JsonObject) new JsonParser().parse(reader);
     } catch (JsonSyntaxException e) {
       // Include the line in the message so that we can better diagnose the problem
-      throw new JsonSyntaxException("Parse server message failed: " + line, e);
+      throw new JsonSyntaxException("Parse server message failed: " + new String(line, StandardCharsets.UTF_8), e);
+    }
+  }
+
+  private static String toDebugString(byte[] line) {
+    if (line.length <= MAX_DEBUG_LINE_LENGTH) {
+      return new String(line, StandardCharsets.UTF_8);
     }
+    return new String(line, 0, MAX_DEBUG_LINE_LENGTH, StandardCharsets.UTF_8) + "...";
   }
 }
@@ -97,6 +97,16 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
    */
   private final BroadcastAnalysisServerListener listener = new BroadcastAnalysisServerListener();
 
+  /**
+   * Routes responses and notifications read from the server to the threads they are processed on.
+   */
+  private final ResponseDispatcher responseDispatcher = new ResponseDispatcher(listener, new ResponseDispatcher.ResponseProcessor() {
+    @Override
+    public void process(JsonObject response) throws Exception {
+      processResponse(response);
+    }
+  });
+
   private final List<AnalysisServerStatusListener> statusListenerList = new ArrayList<AnalysisServerStatusListener>();
 
   /**
@@ -927,6 +937,20 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     }
   }
 
+  /**
+   * Returns the number of analysis notifications read from the server and waiting for processing.
+   */
+  public int getNotificationQueueDepth() {
+    return responseDispatcher.getQueueDepth();
+  }
+
+  /**
+   * Returns processing latency statistics keyed by notification event name.
+   */
+  public Map<String, ResponseDispatcher.EventStatistics> getNotificationStatistics() {
+    return responseDispatcher.getStatistics();
+  }
+
   /**
    * A thread which reads responses from the {@link ResponseStream} and calls the associated
    * {@link Consumer}s from {@link RemoteAnalysisServerImpl#consumerMap}.
@@ -943,15 +967,24 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
 
     @Override
     public void run() {
+      try {
+        readResponses();
+      }
+      finally {
+        responseDispatcher.shutdown();
+      }
+    }
+
+    private void readResponses() {
       while (true) {
         try {
-          JsonObject response = stream.take();
+          byte[] response = stream.takeBytes();
           if (response == null) {
             return;
           }
           lastResponseTime.set(System.currentTimeMillis());
           try {
-            processResponse(response);
+            responseDispatcher.dispatch(response);
           }
           finally {
             stream.lastRequestProcessed();
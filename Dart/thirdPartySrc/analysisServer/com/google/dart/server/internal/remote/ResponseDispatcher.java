@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2018, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.dart.server.AnalysisServerListener;
+import com.google.dart.server.internal.remote.processor.StreamingNotificationProcessor;
+import com.google.dart.server.utilities.logging.Logging;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches responses read from the server to the thread they are processed on.
+ * <ul>
+ * <li>Per-file analysis notifications are parsed by a fixed set of single-threaded lanes, the lane
+ * is chosen by the file path. This keeps notifications for the same file in order, while
+ * notifications for different files are parsed concurrently.</li>
+ * <li>Responses to requests, and notifications that are not bound to a single file, are processed
+ * right away on the reader thread, so that they never wait behind a large batch of analysis
+ * results.</li>
+ * </ul>
+ * The listener is called concurrently from the reader thread and the lanes, but never concurrently
+ * for the same file.
+ *
+ * @coverage dart.server.remote
+ */
+public class ResponseDispatcher {
+  /**
+   * Processes a single response, given as a JSON object.
+   */
+  public interface ResponseProcessor {
+    void process(JsonObject response) throws Exception;
+  }
+
+  /**
+   * Latency statistics of one kind of notification, from the moment it was read from the stream
+   * to the moment its processing completed.
+   */
+  public static class EventStatistics {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private void record(long nanos) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max;
+      do {
+        max = maxNanos.get();
+      } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getAverageLatencyMillis() {
+      long c = count.get();
+      return c == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / c);
+    }
+
+    public long getMaxLatencyMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    @Override
+    public String toString() {
+      return "count: " + getCount() + ", avg: " + getAverageLatencyMillis() + "ms, max: "
+          + getMaxLatencyMillis() + "ms";
+    }
+  }
+
+  private static final String ANALYSIS_NOTIFICATION_FLUSH_RESULTS = "analysis.flushResults";
+  private static final String RESPONSE = "response";
+
+  /**
+   * Notifications that have a "file" parameter and affect only the results for that file.
+   */
+  private static final Set<String> PER_FILE_EVENTS = ImmutableSet.of(
+      "analysis.closingLabels",
+      "analysis.errors",
+      "analysis.highlights",
+      "analysis.implemented",
+      "analysis.navigation",
+      "analysis.occurrences",
+      "analysis.outline",
+      "analysis.overrides");
+
+  private final AnalysisServerListener listener;
+  private final ResponseProcessor processor;
+  private final Lane[] lanes;
+  private final Map<String, EventStatistics> statistics = new ConcurrentHashMap<String, EventStatistics>();
+
+  public ResponseDispatcher(AnalysisServerListener listener, ResponseProcessor processor) {
+    this(listener, processor, Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+  }
+
+  public ResponseDispatcher(AnalysisServerListener listener, ResponseProcessor processor, int laneCount) {
+    this.listener = listener;
+    this.processor = processor;
+    this.lanes = new Lane[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] = new Lane(i);
+    }
+  }
+
+  /**
+   * Processes the given UTF-8 encoded response or schedules it for processing.
+   */
+  public void dispatch(final byte[] response) throws Exception {
+    final long start = System.nanoTime();
+
+    String event = null;
+    String file = null;
+    JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(response),
+                                                             StandardCharsets.UTF_8));
+    reader.setLenient(true);
+    try {
+      reader.beginObject();
+      if (reader.hasNext() && "event".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+        event = reader.nextString();
+        if (PER_FILE_EVENTS.contains(event)) {
+          file = readFileParameter(reader);
+        }
+      }
+    } catch (IOException e) {
+      // malformed line, let the regular processing report it
+    } finally {
+      reader.close();
+    }
+
+    if (file != null) {
+      final String finalEvent = event;
+      schedule(file, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            StreamingNotificationProcessor streamingProcessor = ((LaneThread) Thread.currentThread()).streamingProcessor;
+            if (!streamingProcessor.process(response)) {
+              processor.process(ByteResponseStream.parse(response));
+            }
+          } catch (Throwable e) {
+            Logging.getLogger().logError(e.getMessage(), e);
+          }
+          recordLatency(finalEvent, start);
+        }
+      });
+      return;
+    }
+
+    JsonObject jsonResponse = ByteResponseStream.parse(response);
+    if (ANALYSIS_NOTIFICATION_FLUSH_RESULTS.equals(event)) {
+      dispatchFlushResults(jsonResponse, start);
+      return;
+    }
+    processor.process(jsonResponse);
+    recordLatency(event != null ? event : RESPONSE, start);
+  }
+
+  /**
+   * Returns the total number of notifications waiting for processing.
+   */
+  public int getQueueDepth() {
+    int depth = 0;
+    for (Lane lane : lanes) {
+      depth += lane.getQueue().size();
+    }
+    return depth;
+  }
+
+  /**
+   * Returns latency statistics keyed by notification event name; request responses are recorded
+   * as "response".
+   */
+  public Map<String, EventStatistics> getStatistics() {
+    return Collections.unmodifiableMap(statistics);
+  }
+
+  /**
+   * Stops the lane threads after all already scheduled notifications are processed.
+   */
+  public void shutdown() {
+    for (Lane lane : lanes) {
+      lane.shutdown();
+    }
+  }
+
+  /**
+   * "analysis.flushResults" lists many files, each of them is flushed on its own lane, so that it
+   * is ordered with other notifications for the same file.
+   */
+  private void dispatchFlushResults(JsonObject response, final long start) {
+    JsonObject params = response.getAsJsonObject("params");
+    if (params == null || params.getAsJsonArray("files") == null) {
+      return;
+    }
+    for (JsonElement fileElement : params.getAsJsonArray("files")) {
+      final String file = fileElement.getAsString();
+      schedule(file, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            listener.flushedResults(Collections.singletonList(file));
+          } catch (Throwable e) {
+            Logging.getLogger().logError(e.getMessage(), e);
+          }
+          recordLatency(ANALYSIS_NOTIFICATION_FLUSH_RESULTS, start);
+        }
+      });
+    }
+  }
+
+  private void schedule(String file, Runnable runnable) {
+    try {
+      lanes[(file.hashCode() & Integer.MAX_VALUE) % lanes.length].execute(runnable);
+    } catch (RejectedExecutionException e) {
+      // shut down
+    }
+  }
+
+  private void recordLatency(String event, long start) {
+    EventStatistics eventStatistics = statistics.get(event);
+    if (eventStatistics == null) {
+      statistics.putIfAbsent(event, new EventStatistics());
+      eventStatistics = statistics.get(event);
+    }
+    eventStatistics.record(System.nanoTime() - start);
+  }
+
+  /**
+   * Returns the value of the "file" parameter if it is the first member of "params", the server
+   * always writes it first.
+   */
+  private static String readFileParameter(JsonReader reader) throws IOException {
+    while (reader.hasNext()) {
+      if ("params".equals(reader.nextName())) {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+          return null;
+        }
+        reader.beginObject();
+        if (reader.hasNext() && "file".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+          return reader.nextString();
+        }
+        return null;
+      }
+      reader.skipValue();
+    }
+    return null;
+  }
+
+  private class Lane extends ThreadPoolExecutor {
+    public Lane(final int index) {
+      super(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          return new LaneThread(runnable, "AnalysisServer notifications lane " + index + "-" + threadCount.incrementAndGet());
+        }
+      });
+    }
+  }
+
+  private class LaneThread extends Thread {
+    private final StreamingNotificationProcessor streamingProcessor = new StreamingNotificationProcessor(listener);
+
+    public LaneThread(Runnable runnable, String name) {
+      super(runnable, name);
+      setDaemon(true);
+    }
+  }
+}
@@ -30,4 +30,10 @@ public interface ResponseStream {
    * Takes the the next response from the stream. Blocks if no response available.
    */
   JsonObject take() throws Exception;
+
+  /**
+   * Takes the next response from the stream as the UTF-8 bytes of a single JSON object, without
+   * parsing it. Blocks if no response available. Returns {@code null} if the stream is closed.
+   */
+  byte[] takeBytes() throws Exception;
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2018, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote.processor;
+
+import com.google.dart.server.AnalysisServerListener;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.dartlang.analysis.server.protocol.HighlightRegion;
+import org.dartlang.analysis.server.protocol.NavigationRegion;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Processor for the largest notifications ("analysis.highlights" and "analysis.navigation") that
+ * decodes them directly from the raw UTF-8 bytes with a {@link JsonReader}, without building an
+ * intermediate {@code JsonObject} tree.
+ * <p>
+ * Only notifications where "event" is the first member are handled; the server always writes it
+ * first. Everything else is left to the regular {@link NotificationProcessor}s.
+ * <p>
+ * Instances are not thread-safe, they are expected to be used by the single response reader
+ * thread.
+ *
+ * @coverage dart.server.remote
+ */
+public class StreamingNotificationProcessor {
+  private static final String ANALYSIS_NOTIFICATION_HIGHTLIGHTS = "analysis.highlights";
+  private static final String ANALYSIS_NOTIFICATION_NAVIGATION = "analysis.navigation";
+
+  private static final int[] EMPTY_INT_ARRAY = new int[0];
+
+  private final AnalysisServerListener listener;
+
+  /**
+   * Highlight types and navigation target kinds come from small enums, so a single instance of
+   * each string is shared by all regions.
+   */
+  private final Map<String, String> internedStrings = new HashMap<String, String>();
+
+  public StreamingNotificationProcessor(AnalysisServerListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Processes the given UTF-8 encoded response if it is a notification handled by this processor.
+   *
+   * @return {@code true} if the response was handled, {@code false} if it must be processed as a
+   *         regular {@code JsonObject}
+   */
+  public boolean process(byte[] response) throws IOException {
+    JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(response),
+                                                             StandardCharsets.UTF_8));
+    reader.setLenient(true);
+    try {
+      reader.beginObject();
+      if (!reader.hasNext() || !"event".equals(reader.nextName()) || reader.peek() != JsonToken.STRING) {
+        return false;
+      }
+      String event = reader.nextString();
+      if (ANALYSIS_NOTIFICATION_HIGHTLIGHTS.equals(event)) {
+        if (!skipToParams(reader)) {
+          return false;
+        }
+        processHighlights(reader);
+        return true;
+      }
+      if (ANALYSIS_NOTIFICATION_NAVIGATION.equals(event)) {
+        if (!skipToParams(reader)) {
+          return false;
+        }
+        processNavigation(reader);
+        return true;
+      }
+      return false;
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void processHighlights(JsonReader reader) throws IOException {
+    String file = null;
+    List<HighlightRegion> regions = HighlightRegion.EMPTY_LIST;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("file".equals(name)) {
+        file = reader.nextString();
+      } else if ("regions".equals(name)) {
+        regions = new ArrayList<HighlightRegion>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          regions.add(readHighlightRegion(reader));
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    // notify listener
+    listener.computedHighlights(file, regions);
+  }
+
+  private HighlightRegion readHighlightRegion(JsonReader reader) throws IOException {
+    String type = null;
+    int offset = 0;
+    int length = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("type".equals(name)) {
+        type = intern(reader.nextString());
+      } else if ("offset".equals(name)) {
+        offset = reader.nextInt();
+      } else if ("length".equals(name)) {
+        length = reader.nextInt();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new HighlightRegion(type, offset, length);
+  }
+
+  private void processNavigation(JsonReader reader) throws IOException {
+    String file = null;
+    List<NavigationRegion> regions = NavigationRegion.EMPTY_LIST;
+    List<NavigationTarget> targets = NavigationTarget.EMPTY_LIST;
+    List<String> files = new ArrayList<String>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("file".equals(name)) {
+        file = reader.nextString();
+      } else if ("regions".equals(name)) {
+        regions = new ArrayList<NavigationRegion>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          regions.add(readNavigationRegion(reader));
+        }
+        reader.endArray();
+      } else if ("targets".equals(name)) {
+        targets = new ArrayList<NavigationTarget>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          targets.add(readNavigationTarget(reader));
+        }
+        reader.endArray();
+      } else if ("files".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          files.add(reader.nextString());
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    // regions refer to targets and targets refer to files by index, resolve them now
+    String[] targetFiles = files.toArray(new String[files.size()]);
+    for (NavigationTarget target : targets) {
+      target.lookupFile(targetFiles);
+    }
+    for (NavigationRegion region : regions) {
+      region.lookupTargets(targets);
+    }
+    // notify listener
+    listener.computedNavigation(file, regions);
+  }
+
+  private NavigationRegion readNavigationRegion(JsonReader reader) throws IOException {
+    int offset = 0;
+    int length = 0;
+    int[] targets = EMPTY_INT_ARRAY;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("offset".equals(name)) {
+        offset = reader.nextInt();
+      } else if ("length".equals(name)) {
+        length = reader.nextInt();
+      } else if ("targets".equals(name)) {
+        targets = readIntArray(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new NavigationRegion(offset, length, targets);
+  }
+
+  private NavigationTarget readNavigationTarget(JsonReader reader) throws IOException {
+    String kind = null;
+    int fileIndex = 0;
+    int offset = 0;
+    int length = 0;
+    int startLine = 0;
+    int startColumn = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("kind".equals(name)) {
+        kind = intern(reader.nextString());
+      } else if ("fileIndex".equals(name)) {
+        fileIndex = reader.nextInt();
+      } else if ("offset".equals(name)) {
+        offset = reader.nextInt();
+      } else if ("length".equals(name)) {
+        length = reader.nextInt();
+      } else if ("startLine".equals(name)) {
+        startLine = reader.nextInt();
+      } else if ("startColumn".equals(name)) {
+        startColumn = reader.nextInt();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new NavigationTarget(kind, fileIndex, offset, length, startLine, startColumn);
+  }
+
+  private static int[] readIntArray(JsonReader reader) throws IOException {
+    int[] ints = new int[4];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == ints.length) {
+        int[] newInts = new int[size * 2];
+        System.arraycopy(ints, 0, newInts, 0, size);
+        ints = newInts;
+      }
+      ints[size++] = reader.nextInt();
+    }
+    reader.endArray();
+    if (size == ints.length) {
+      return ints;
+    }
+    int[] result = new int[size];
+    System.arraycopy(ints, 0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * Moves the reader to the value of the "params" member of the notification.
+   *
+   * @return {@code false} if there is no "params" object
+   */
+  private static boolean skipToParams(JsonReader reader) throws IOException {
+    while (reader.hasNext()) {
+      if ("params".equals(reader.nextName())) {
+        return reader.peek() == JsonToken.BEGIN_OBJECT;
+      }
+      reader.skipValue();
+    }
+    return false;
+  }
+
+  private String intern(String s) {
+    String interned = internedStrings.get(s);
+    if (interned == null) {
+      internedStrings.put(s, s);
+      interned = s;
+    }
+    return interned;
+  }
+}
@@ -1,6 +1,7 @@
 package com.intellij.flex;
 
 import com.intellij.flex.bc.FlexCompilerConfigTest;
+import com.intellij.flex.bc.FlexCompilerDependenciesCacheTest;
 import com.intellij.flex.bc.FlexProjectConfigTest;
 import com.intellij.flex.codeInsight.*;
 import com.intellij.flex.completion.*;
@@ -27,6 +28,7 @@ import com.intellij.flex.refactoring.*;
 import com.intellij.flex.resolver.ActionScriptResolveTest;
 import com.intellij.flex.resolver.FlexCssNavigationTest;
 import com.intellij.flex.uml.FlashUmlTest;
+import com.intellij.javascript.flex.compiled.SwfStubCacheTest;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -39,6 +41,7 @@ public class FlexTestSuite extends TestCase {
 
     // com.intellij.flex.bc.*
     testSuite.addTestSuite(FlexCompilerConfigTest.class);
+    testSuite.addTestSuite(FlexCompilerDependenciesCacheTest.class);
     testSuite.addTestSuite(FlexProjectConfigTest.class);
 
     // com.intellij.flex.codeInsight.*
@@ -136,6 +139,9 @@ public class FlexTestSuite extends TestCase {
     //com.intellij.flex.uml.*
     testSuite.addTestSuite(FlashUmlTest.class);
 
+    //com.intellij.javascript.flex.compiled.*
+    testSuite.addTestSuite(SwfStubCacheTest.class);
+
     return testSuite;
   }
 }
@@ -0,0 +1,128 @@
+package com.intellij.flex.bc;
+
+import com.intellij.lang.javascript.flex.FlexModuleType;
+import com.intellij.lang.javascript.flex.build.FlexCompilerDependenciesCache;
+import com.intellij.lang.javascript.flex.build.FlexCompilerHandler;
+import com.intellij.lang.javascript.flex.projectStructure.model.ModifiableFlexBuildConfiguration;
+import com.intellij.lang.javascript.flex.projectStructure.model.impl.Factory;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.module.ModuleType;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.testFramework.PsiTestUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+public class FlexCompilerDependenciesCacheTest extends PlatformTestCase {
+
+  private VirtualFile myModuleDir;
+  private VirtualFile myLibrary;
+  private VirtualFile myConfigFile;
+  private ModifiableFlexBuildConfiguration myBC;
+
+  @Override
+  protected ModuleType getModuleType() {
+    return FlexModuleType.getInstance();
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    myModuleDir = getModule().getModuleFile().getParent();
+    PsiTestUtil.addContentRoot(getModule(), myModuleDir);
+    WriteAction.run(() -> {
+      PsiTestUtil.addSourceRoot(getModule(), myModuleDir.createChildDirectory(this, "src"));
+
+      myLibrary = myModuleDir.createChildDirectory(this, "libs").createChildData(this, "lib.swc");
+      myLibrary.setBinaryContent(new byte[]{1, 2, 3});
+
+      // relative path, like in generated config files
+      myConfigFile = myModuleDir.createChildDirectory(this, "build").createChildData(this, "config.xml");
+      VfsUtil.saveText(myConfigFile, getConfigText("../libs/lib.swc"));
+
+      myModuleDir.createChildDirectory(this, "out").createChildData(this, "bc.swf").setBinaryContent(new byte[]{4, 5});
+    });
+
+    myBC = Factory.createBuildConfiguration();
+    myBC.setName("bc");
+    myBC.setOutputFolder(myModuleDir.getPath() + "/out");
+    myBC.setOutputFileName("bc.swf");
+  }
+
+  private static String getConfigText(final String libraryPath) {
+    return "<flex-config><compiler><library-path><path-element>" + libraryPath + "</path-element></library-path></compiler></flex-config>";
+  }
+
+  // the cache of the project component gets VFS events
+  private FlexCompilerDependenciesCache cacheBC() {
+    final FlexCompilerDependenciesCache cache = FlexCompilerHandler.getInstance(myProject).getCompilerDependenciesCache();
+    cacheBC(cache);
+    return cache;
+  }
+
+  private void cacheBC(final FlexCompilerDependenciesCache cache) {
+    cache.cacheBC(getModule(), myBC, Collections.singletonList(myConfigFile));
+    assertTrue(cache.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+  }
+
+  public void testLibraryChanged() throws Exception {
+    final FlexCompilerDependenciesCache cache = cacheBC();
+    WriteAction.run(() -> myLibrary.setBinaryContent(new byte[]{1, 2, 3, 4}));
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+  }
+
+  public void testConfigFileRewrittenWithSameText() throws Exception {
+    final FlexCompilerDependenciesCache cache = cacheBC();
+    WriteAction.run(() -> VfsUtil.saveText(myConfigFile, getConfigText("../libs/lib.swc")));
+    assertTrue(cache.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+  }
+
+  public void testLibraryRenamed() throws Exception {
+    final FlexCompilerDependenciesCache cache = cacheBC();
+    WriteAction.run(() -> myLibrary.rename(this, "lib2.swc"));
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+  }
+
+  public void testLibraryFolderMoved() throws Exception {
+    final FlexCompilerDependenciesCache cache = cacheBC();
+    WriteAction.run(() -> myLibrary.getParent().move(this, myModuleDir.createChildDirectory(this, "moved")));
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+  }
+
+  public void testLibraryOutsideOfContentChanged() throws Exception {
+    final File library = new File(createTempDirectory(), "external.swc");
+    FileUtil.writeToFile(library, new byte[]{1, 2, 3});
+    WriteAction.run(() -> VfsUtil.saveText(myConfigFile, getConfigText(FileUtil.toSystemIndependentName(library.getPath()))));
+
+    final FlexCompilerDependenciesCache cache = cacheBC();
+    FileUtil.writeToFile(library, new byte[]{1, 2, 3, 4});
+    // not reported by VFS until the file watcher notices the change
+    assertTrue(cache.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+    VfsUtil.markDirtyAndRefresh(false, false, false, library);
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+  }
+
+  public void testSaveAndLoad() throws IOException {
+    final File cacheFile = new File(createTempDirectory(), "cache");
+    final FlexCompilerDependenciesCache cache = new FlexCompilerDependenciesCache(myProject, cacheFile);
+    cacheBC(cache);
+    cache.save();
+    assertTrue(cacheFile.isFile());
+
+    final FlexCompilerDependenciesCache loaded = new FlexCompilerDependenciesCache(myProject, cacheFile);
+    assertFalse(cacheFile.exists());
+    assertTrue(loaded.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+    loaded.save();
+
+    // changed while the project is closed, VFS doesn't know about it
+    FileUtil.writeToFile(VfsUtilCore.virtualToIoFile(myLibrary), new byte[]{1, 2, 3, 4});
+    final FlexCompilerDependenciesCache loadedAgain = new FlexCompilerDependenciesCache(myProject, cacheFile);
+    assertFalse(loadedAgain.isNothingChangedSincePreviousCompilation(getModule(), myBC));
+  }
+}
@@ -0,0 +1,111 @@
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.flex.util.FlexTestUtils;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.LightVirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SwfStubCacheTest extends LightPlatformTestCase {
+  private static final String SWF_NAME = "employeedirectory.swf";
+
+  private File myDir;
+  private byte[] myContent;
+  private StubElement myStub;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory(getTestName(true), null);
+    myContent = FileUtil.loadFileBytes(new File(FlexTestUtils.getTestDataPath("flex_importer"), SWF_NAME));
+    myStub = SwfFileStubBuilder.buildFileStub(new LightVirtualFile(SWF_NAME), myContent);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @NotNull
+  private File getEntry(@NotNull final String key) {
+    return new File(myDir, key + ".stub");
+  }
+
+  public void testRoundTrip() {
+    final SwfStubCache cache = new SwfStubCache(myDir, Long.MAX_VALUE);
+    final String key = SwfStubCache.getKey(myContent, 1);
+    assertNotNull(key);
+    assertNull(cache.get(key, myContent.length));
+
+    cache.put(key, myStub);
+    final StubElement cached = cache.get(key, myContent.length);
+    assertNotNull(cached);
+    assertEquals(DebugUtil.stubTreeToString(myStub), DebugUtil.stubTreeToString(cached));
+
+    // another IDE session
+    assertNotNull(new SwfStubCache(myDir, Long.MAX_VALUE).get(key, myContent.length));
+  }
+
+  public void testKeyMismatch() {
+    final SwfStubCache cache = new SwfStubCache(myDir, Long.MAX_VALUE);
+    cache.put(SwfStubCache.getKey(myContent, 1), myStub);
+
+    final byte[] otherContent = myContent.clone();
+    otherContent[otherContent.length - 1]++;
+    assertNull(cache.get(SwfStubCache.getKey(otherContent, 1), otherContent.length));
+    assertNull(cache.get(SwfStubCache.getKey(myContent, 2), myContent.length));
+  }
+
+  public void testDamagedEntryDeleted() throws IOException {
+    final SwfStubCache cache = new SwfStubCache(myDir, Long.MAX_VALUE);
+    final String key = SwfStubCache.getKey(myContent, 1);
+    FileUtil.writeToFile(getEntry(key), new byte[]{1, 2, 3});
+
+    assertNull(cache.get(key, myContent.length));
+    assertFalse(getEntry(key).exists());
+  }
+
+  public void testLeastRecentlyUsedEvicted() {
+    new SwfStubCache(myDir, Long.MAX_VALUE).put("size", myStub);
+    final long entrySize = getEntry("size").length();
+    assertTrue(FileUtil.delete(getEntry("size")));
+
+    // 3.5 entries fit, eviction leaves 2.625
+    final SwfStubCache cache = new SwfStubCache(myDir, entrySize * 7 / 2);
+    cache.put("a", myStub);
+    cache.put("b", myStub);
+    cache.put("c", myStub);
+    final long now = System.currentTimeMillis();
+    assertTrue(getEntry("a").setLastModified(now - 30000));
+    assertTrue(getEntry("b").setLastModified(now - 20000));
+    assertTrue(getEntry("c").setLastModified(now - 10000));
+    assertNotNull(cache.get("a", myContent.length));
+
+    cache.put("d", myStub);
+    assertTrue(getEntry("a").exists());
+    assertFalse(getEntry("b").exists());
+    assertFalse(getEntry("c").exists());
+    assertTrue(getEntry("d").exists());
+  }
+
+  public void testTempFilesDeletedOnOpen() throws IOException {
+    new SwfStubCache(myDir, Long.MAX_VALUE).put("a", myStub);
+    // left by a write interrupted in the previous session
+    final File tempFile = new File(myDir, "b1234.tmp");
+    FileUtil.writeToFile(tempFile, new byte[]{1});
+
+    new SwfStubCache(myDir, Long.MAX_VALUE);
+    assertFalse(tempFile.exists());
+    assertTrue(getEntry("a").exists());
+  }
+}
@@ -11,13 +11,10 @@ import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.stubs.BinaryFileStubBuilder;
 import com.intellij.psi.stubs.PsiFileStub;
-import com.intellij.psi.stubs.PsiFileStubImpl;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.indexing.FileContent;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
-
 /**
  * @author Maxim.Mossienko
  */
@@ -30,23 +27,40 @@ public class SwfFileStubBuilder implements BinaryFileStubBuilder {
   }
 
   public StubElement buildStubTree(FileContent fileContent) {
-    return buildFileStub(fileContent.getFile(), fileContent.getContent());
+    final byte[] content = fileContent.getContent();
+    final SwfStubCache cache = SwfStubCache.getInstance();
+    final String key = cache == null ? null : SwfStubCache.getKey(content, getStubVersion());
+    if (key != null) {
+      final StubElement cachedStub = cache.get(key, content.length);
+      if (cachedStub != null) return cachedStub;
+    }
+
+    final PsiFileStub stub = createFileStub();
+    // an empty or incomplete stub built from a SWF that failed to decode is not cached, so that the next indexing tries again
+    if (buildStubs(fileContent.getFile(), content, stub) && key != null) {
+      cache.put(key, stub);
+    }
+    return stub;
   }
 
   static PsiFileStub buildFileStub(VirtualFile file, byte[] content) {
-    PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
-    try {
+    final PsiFileStub stub = createFileStub();
+    buildStubs(file, content, stub);
+    return stub;
+  }
 
-      FlexImporter.buildStubsInterfaceFromStream(
-        new ByteArrayInputStream(content),
-        stub
-      );
+  private static PsiFileStub createFileStub() {
+    return new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+  }
 
+  private static boolean buildStubs(VirtualFile file, byte[] content, PsiFileStub stub) {
+    try {
+      FlexImporter.buildStubsInterface(content, stub);
+      return true;
     } catch (Exception ex) {
       Logger.getInstance(SwfFileStubBuilder.class.getName()).warn(file.getPath(), ex);
+      return false;
     }
-
-    return stub;
   }
 
   public int getStubVersion() {
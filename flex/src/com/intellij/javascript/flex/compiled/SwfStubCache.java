@@ -0,0 +1,188 @@
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.stubs.SerializationManagerEx;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.psi.stubs.StubElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stub trees built from {@code library.swf} files, stored on disk and shared by all projects. The same SDKs and libraries are usually
+ * attached to many projects, so a SWF with the same content is decoded only once.
+ * <p/>
+ * Entries are keyed by SHA-1 of the SWF content and the stub version. Serialized stubs refer to stub serializers by ids from the
+ * IDE-wide name registry, which lives under the index root and is recreated with the indices, so the cache lives there as well and
+ * goes away together with the ids it was written with ("Invalidate Caches", index rebuild). The least recently used entries are
+ * deleted when the total size exceeds the limit set by the {@code flex.swf.stub.cache.max.size.mb} system property.
+ */
+class SwfStubCache {
+  private static final Logger LOG = Logger.getInstance(SwfStubCache.class.getName());
+
+  private static final long MAX_SIZE = Long.getLong("flex.swf.stub.cache.max.size.mb", 256) * 1024 * 1024;
+  private static final String EXTENSION = ".stub";
+  private static final String TEMP_EXTENSION = ".tmp";
+
+  private static SwfStubCache ourInstance;
+
+  @NotNull private final File myDir;
+  private final long myMaxSize;
+
+  private final Object myLock = new Object();
+  private long myTotalSize = -1; // guarded by myLock, computed on first write
+
+  private final AtomicLong myHits = new AtomicLong();
+  private final AtomicLong myMisses = new AtomicLong();
+  private final AtomicLong myBytesSaved = new AtomicLong();
+
+  SwfStubCache(@NotNull final File dir, final long maxSize) {
+    myDir = dir;
+    myMaxSize = maxSize;
+    deleteTempFiles();
+  }
+
+  // left by writes interrupted by an IDE crash or kill; the cache directory is used by a single IDE instance only
+  private void deleteTempFiles() {
+    final File[] files = myDir.listFiles((dir, name) -> name.endsWith(TEMP_EXTENSION));
+    if (files == null) return;
+    for (File file : files) {
+      FileUtil.delete(file);
+    }
+  }
+
+  /**
+   * @return {@code null} in tests, so that they always check freshly built stubs
+   */
+  @Nullable
+  static synchronized SwfStubCache getInstance() {
+    if (ApplicationManager.getApplication().isUnitTestMode() || MAX_SIZE <= 0) return null;
+
+    if (ourInstance == null) {
+      ourInstance = new SwfStubCache(new File(PathManager.getIndexRoot(), "flex-swf-stubs"), MAX_SIZE);
+    }
+    return ourInstance;
+  }
+
+  @Nullable
+  static String getKey(@NotNull final byte[] content, final int stubVersion) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(content)) + "-" + stubVersion;
+    }
+    catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  StubElement get(@NotNull final String key, final int contentLength) {
+    final File file = new File(myDir, key + EXTENSION);
+    if (!file.isFile()) {
+      myMisses.incrementAndGet();
+      return null;
+    }
+
+    try {
+      final Stub stub = SerializationManagerEx.getInstanceEx().deserialize(new ByteArrayInputStream(FileUtil.loadFileBytes(file)));
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis()); // for eviction
+      myHits.incrementAndGet();
+      myBytesSaved.addAndGet(contentLength);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(getStatistics());
+      }
+      return (StubElement)stub;
+    }
+    catch (Exception e) {
+      // written by an incompatible version or damaged
+      LOG.debug(e);
+      FileUtil.delete(file);
+      myMisses.incrementAndGet();
+      return null;
+    }
+  }
+
+  void put(@NotNull final String key, @NotNull final StubElement stub) {
+    final BufferExposingByteArrayOutputStream out = new BufferExposingByteArrayOutputStream();
+    SerializationManagerEx.getInstanceEx().serialize(stub, out);
+
+    final File file = new File(myDir, key + EXTENSION);
+    try {
+      // concurrent indexing of the same content in several projects is fine: the last rename wins, contents are the same
+      FileUtil.createDirectory(myDir);
+      final File tempFile = FileUtil.createTempFile(myDir, key, TEMP_EXTENSION, true, false);
+      FileUtil.writeToFile(tempFile, out.getInternalBuffer(), 0, out.size());
+      final long oldLength = file.length();
+      if (!tempFile.renameTo(file)) {
+        FileUtil.rename(tempFile, file);
+      }
+      added(out.size() - oldLength);
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+  }
+
+  private void added(final long delta) {
+    synchronized (myLock) {
+      if (myTotalSize < 0) {
+        myTotalSize = 0;
+        for (File file : listEntries()) {
+          myTotalSize += file.length();
+        }
+      }
+      else {
+        myTotalSize += delta;
+      }
+
+      if (myTotalSize > myMaxSize) {
+        evict();
+      }
+    }
+  }
+
+  // deletes the least recently used entries until the cache takes 3/4 of the limit
+  private void evict() {
+    final File[] files = listEntries();
+    final long[] lastModified = new long[files.length];
+    final Integer[] order = new Integer[files.length];
+    for (int i = 0; i < files.length; i++) {
+      lastModified[i] = files[i].lastModified();
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+
+    for (Integer i : order) {
+      if (myTotalSize <= myMaxSize * 3 / 4) break;
+      final long length = files[i].length();
+      if (FileUtil.delete(files[i])) {
+        myTotalSize -= length;
+      }
+    }
+  }
+
+  @NotNull
+  private File[] listEntries() {
+    final File[] files = myDir.listFiles((dir, name) -> name.endsWith(EXTENSION));
+    return files == null ? new File[0] : files;
+  }
+
+  @NotNull
+  String getStatistics() {
+    return "SWF stub cache: " + myHits.get() + " hits, " + myMisses.get() + " misses, " +
+           StringUtil.formatFileSize(myBytesSaved.get()) + " of SWF not decoded";
+  }
+}
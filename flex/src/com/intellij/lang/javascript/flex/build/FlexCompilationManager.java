@@ -11,6 +11,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.compiler.CompilerMessage;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.NullableComputable;
@@ -24,6 +25,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class FlexCompilationManager {
+  private static final Logger LOG = Logger.getInstance(FlexCompilationManager.class.getName());
 
   private final CompileContext myCompileContext;
   private final int myMaxParallelCompilations;
@@ -78,6 +80,10 @@ public class FlexCompilationManager {
       synchronized (this) {
         myCompilationFinished = true;
       }
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(myCompilerDependenciesCache.getStatistics());
+      }
     }
   }
 
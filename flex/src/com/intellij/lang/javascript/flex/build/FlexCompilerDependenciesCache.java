@@ -5,28 +5,65 @@ import com.intellij.flex.model.bc.BuildConfigurationNature;
 import com.intellij.lang.javascript.flex.FlexUtils;
 import com.intellij.lang.javascript.flex.projectStructure.model.FlexBuildConfiguration;
 import com.intellij.lang.javascript.flex.projectStructure.model.impl.Factory;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.ModuleListener;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.IOUtil;
 import gnu.trove.THashMap;
+import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
+/**
+ * Remembers file dependencies of successfully compiled build configurations in order to skip their compilation if nothing has changed.
+ * <p/>
+ * Dependencies are not polled: VFS events mark them as possibly changed, and only those are checked on the next compilation. Dependencies
+ * outside of the project content, e.g. SDK SWCs or generated config files, are added to the watched roots so that VFS reports their
+ * changes too. A build configuration with a dependency that VFS can't report, e.g. one known to VFS under another path, is not cached.
+ * A file with a different timestamp but the same content, e.g. a regenerated config file, doesn't make the build configuration dirty.
+ * <p/>
+ * The cache is saved when the project is closed and loaded when it is opened. Loaded build configurations check their dependencies and
+ * the timestamps of their source roots once. Changes of source files made while the project was closed are reported by the VFS refresh
+ * that follows project opening.
+ */
 public class FlexCompilerDependenciesCache {
+  private static final Logger LOG = Logger.getInstance(FlexCompilerDependenciesCache.class.getName());
+
+  private static final int VERSION = 3;
+  // larger files (SWCs, SWFs, fonts) are compared by timestamp and length only
+  private static final long MAX_HASHED_FILE_LENGTH = 1024 * 1024;
 
   private final Project myProject;
-  private final Map<Module, Collection<BCInfo>> myCache = new THashMap<>();
+  @Nullable private final File myCacheFile;
+
+  // all maps are guarded by this; module name -> BCs
+  private final Map<String, Collection<BCInfo>> myCache = new THashMap<>();
+  // dependency path -> BCs that depend on it
+  private final Map<String, Collection<BCInfo>> myDependentBCs = new THashMap<>();
+  // "module: BC" -> {skipped, compiled}
+  private final Map<String, int[]> myStatistics = new TreeMap<>();
+  // dependencies outside of the project content that VFS is asked to watch
+  private final Set<String> myWatchedPaths = new THashSet<>();
+  private final Set<LocalFileSystem.WatchRequest> myWatchRequests = new THashSet<>();
 
   private static final String[] TAGS_FOR_FILE_PATHS_IN_CONFIG_FILE =
     {"<flex-config><compiler><external-library-path><path-element>", "<flex-config><compiler><local-font-paths><path-element>",
@@ -42,36 +79,93 @@ public class FlexCompilerDependenciesCache {
     };
 
   public FlexCompilerDependenciesCache(final Project project) {
+    this(project, ApplicationManager.getApplication().isUnitTestMode() || project.isDefault()
+                 ? null
+                 : new File(PathManager.getSystemPath(), "flex-compiler-dependencies/" + project.getLocationHash()));
+  }
+
+  /**
+   * @param cacheFile file the cache is loaded from and saved to, {@code null} if it is kept in memory only
+   */
+  public FlexCompilerDependenciesCache(final Project project, @Nullable final File cacheFile) {
     myProject = project;
+    myCacheFile = cacheFile;
 
     project.getMessageBus().connect(project).subscribe(ProjectTopics.MODULES, new ModuleListener() {
       public void moduleRemoved(@NotNull final Project project, @NotNull final Module module) {
-        myCache.remove(module);
+        markModuleDirty(module);
       }
     });
+
+    Disposer.register(project, () -> {
+      final Set<LocalFileSystem.WatchRequest> requests;
+      synchronized (this) {
+        requests = new THashSet<>(myWatchRequests);
+        myWatchRequests.clear();
+      }
+      LocalFileSystem.getInstance().removeWatchedRoots(requests);
+    });
+
+    final Collection<String> watchedPaths = load();
+    watch(watchedPaths);
   }
 
-  public void clear() {
+  public synchronized void clear() {
     myCache.clear();
+    myDependentBCs.clear();
   }
 
-  public void markModuleDirty(final Module module) {
-    myCache.remove(module);
+  public synchronized void markModuleDirty(final Module module) {
+    final Collection<BCInfo> infosForModule = myCache.remove(module.getName());
+    if (infosForModule != null) {
+      for (BCInfo info : infosForModule) {
+        unregisterDependencies(info);
+      }
+    }
   }
 
-  public void markBCDirty(final Module module, final FlexBuildConfiguration bc) {
-    final Collection<BCInfo> infosForModule = myCache.get(module);
-    final BCInfo existingInfo = infosForModule == null ? null : findCacheForBC(infosForModule, bc);
-    if (existingInfo != null) {
-      infosForModule.remove(existingInfo);
-      if (infosForModule.isEmpty()) {
-        myCache.remove(module);
+  public synchronized void markBCDirty(final Module module, final FlexBuildConfiguration bc) {
+    getStatistics(module, bc)[1]++;
+    removeInfo(module.getName(), findCacheForBC(module.getName(), Factory.getSerializedState(bc)));
+  }
+
+  /**
+   * Called for each VFS event about a file, including the files that are moved or renamed, with their current path.
+   */
+  public void fileChanged(final VirtualFile file) {
+    markDependencyChanged(file.getPath(), file.isDirectory());
+    markModuleDirtyIfInSourceRoot(file);
+  }
+
+  /**
+   * @param path path of a changed, moved or deleted file, or its path before it has been moved or renamed
+   */
+  public synchronized void markDependencyChanged(final String path, final boolean directory) {
+    if (myDependentBCs.isEmpty()) return;
+
+    final Collection<BCInfo> infos = myDependentBCs.get(path);
+    if (infos != null) {
+      for (BCInfo info : infos) {
+        info.myChangedPaths.add(path);
+      }
+    }
+
+    if (directory) {
+      final String prefix = path + "/";
+      for (Map.Entry<String, Collection<BCInfo>> entry : myDependentBCs.entrySet()) {
+        if (entry.getKey().startsWith(prefix)) {
+          for (BCInfo info : entry.getValue()) {
+            info.myChangedPaths.add(entry.getKey());
+          }
+        }
       }
     }
   }
 
-  public void markModuleDirtyIfInSourceRoot(final VirtualFile file) {
-    if (myCache.isEmpty()) return;
+  private void markModuleDirtyIfInSourceRoot(final VirtualFile file) {
+    synchronized (this) {
+      if (myCache.isEmpty()) return;
+    }
 
     final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
     final Module module = fileIndex.getModuleForFile(file);
@@ -81,42 +175,88 @@ public class FlexCompilerDependenciesCache {
   }
 
   public boolean isNothingChangedSincePreviousCompilation(final Module module, final FlexBuildConfiguration bc) {
-    final Collection<BCInfo> infosForModule = myCache.get(module);
-    final BCInfo existingInfo = infosForModule == null ? null : findCacheForBC(infosForModule, bc);
-    if (existingInfo == null) {
-      return false;
+    final String bcState = Factory.getSerializedState(bc);
+    final BCInfo existingInfo;
+    final Collection<String> changedPaths;
+    final boolean checkSourceRoots;
+    // files are checked without the lock, VFS events in the EDT must not wait for them
+    synchronized (this) {
+      existingInfo = findCacheForBC(module.getName(), bcState);
+      if (existingInfo == null) {
+        return false;
+      }
+
+      // paths changed after this point are added again and checked next time
+      changedPaths = new ArrayList<>(existingInfo.myChangedPaths);
+      existingInfo.myChangedPaths.clear();
+      checkSourceRoots = existingInfo.myCheckSourceRoots;
+      existingInfo.myCheckSourceRoots = false;
     }
 
     final String[] currentSourceRoots = ModuleRootManager.getInstance(module).getSourceRootUrls();
-    if (!Arrays.equals(existingInfo.mySourceRootUrls, currentSourceRoots) || existingInfo.timestampsChanged()) {
-      infosForModule.remove(existingInfo);
-      if (infosForModule.isEmpty()) {
-        myCache.remove(module);
+    final boolean changed = !Arrays.equals(existingInfo.mySourceRootUrls, currentSourceRoots) ||
+                            checkSourceRoots && sourceRootsChangedAfter(currentSourceRoots, existingInfo.myOutputTimestamp) ||
+                            existingInfo.dependenciesChanged(changedPaths);
+
+    synchronized (this) {
+      if (changed) {
+        removeInfo(module.getName(), existingInfo);
+        return false;
       }
-      return false;
+
+      if (findCacheForBC(module.getName(), bcState) != existingInfo) {
+        return false;
+      }
+
+      getStatistics(module, bc)[0]++;
+      return true;
     }
+  }
 
-    return true;
+  // directory timestamps change when files are created or deleted; changes deeper in the tree are reported by VFS
+  private static boolean sourceRootsChangedAfter(final String[] sourceRootUrls, final long timestamp) {
+    for (String url : sourceRootUrls) {
+      final File root = new File(FileUtil.toSystemDependentName(VfsUtilCore.urlToPath(url)));
+      if (root.lastModified() > timestamp) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public void cacheBC(final Module module, final FlexBuildConfiguration bc, final List<VirtualFile> configFiles) {
-    Collection<BCInfo> infosForModule = myCache.get(module);
-    if (infosForModule == null) {
-      infosForModule = new ArrayList<>();
-      myCache.put(module, infosForModule);
+    // refresh is performed in a write action in the EDT, where VFS events take the lock, so dependencies are collected without it
+    final VirtualFile outputFile = FlexCompilationManager.refreshAndFindFileInWriteAction(bc.getActualOutputFilePath());
+    final String bcState = Factory.getSerializedState(bc);
+    final BCInfo bcInfo = outputFile == null ? null : createInfo(module, bc, bcState, outputFile, configFiles);
+    if (bcInfo != null && bcInfo.myTrackedByVfs) {
+      watch(bcInfo.myWatchedPaths);
     }
-    else {
-      final BCInfo existingInfo = findCacheForBC(infosForModule, bc);
-      if (existingInfo != null) {
-        infosForModule.remove(existingInfo);
+
+    synchronized (this) {
+      getStatistics(module, bc)[1]++;
+      removeInfo(module.getName(), findCacheForBC(module.getName(), bcState));
+
+      if (bcInfo != null && bcInfo.myTrackedByVfs) {
+        Collection<BCInfo> infosForModule = myCache.get(module.getName());
+        if (infosForModule == null) {
+          infosForModule = new ArrayList<>();
+          myCache.put(module.getName(), infosForModule);
+        }
+        infosForModule.add(bcInfo);
+        registerDependencies(bcInfo);
       }
     }
+  }
 
-    final VirtualFile outputFile = FlexCompilationManager.refreshAndFindFileInWriteAction(bc.getActualOutputFilePath());
-    if (outputFile == null) return;
-
-    final BCInfo bcInfo = new BCInfo(Factory.getCopy(bc), ModuleRootManager.getInstance(module).getSourceRootUrls());
-    infosForModule.add(bcInfo);
+  private static BCInfo createInfo(final Module module,
+                                   final FlexBuildConfiguration bc,
+                                   final String bcState,
+                                   final VirtualFile outputFile,
+                                   final List<VirtualFile> configFiles) {
+    final BCInfo bcInfo = new BCInfo(bcState, ModuleRootManager.getInstance(module).getSourceRootUrls(),
+                                     VfsUtilCore.virtualToIoFile(outputFile).lastModified(),
+                                     ProjectRootManager.getInstance(module.getProject()).getFileIndex());
 
     bcInfo.addFileDependency(outputFile.getPath());
 
@@ -145,11 +285,63 @@ public class FlexCompilerDependenciesCache {
         }
       }
     }
+
+    return bcInfo;
+  }
+
+  private void watch(final Collection<String> paths) {
+    final List<String> newPaths = new ArrayList<>();
+    synchronized (this) {
+      for (String path : paths) {
+        if (myWatchedPaths.add(path)) {
+          newPaths.add(path);
+        }
+      }
+    }
+    if (newPaths.isEmpty()) return;
+
+    final Set<LocalFileSystem.WatchRequest> requests = LocalFileSystem.getInstance().addRootsToWatch(newPaths, false);
+    synchronized (this) {
+      myWatchRequests.addAll(requests);
+    }
   }
 
   @Nullable
-  private static BCInfo findCacheForBC(final @NotNull Collection<BCInfo> bcInfos, @NotNull final FlexBuildConfiguration bc) {
-    return ContainerUtil.find(bcInfos, info -> info.myBC.isEqual(bc));
+  private BCInfo findCacheForBC(final String moduleName, final String bcState) {
+    final Collection<BCInfo> infosForModule = myCache.get(moduleName);
+    return infosForModule == null ? null : ContainerUtil.find(infosForModule, info -> info.myBCState.equals(bcState));
+  }
+
+  private void removeInfo(final String moduleName, @Nullable final BCInfo info) {
+    if (info == null) return;
+
+    final Collection<BCInfo> infosForModule = myCache.get(moduleName);
+    if (infosForModule != null && infosForModule.remove(info)) {
+      if (infosForModule.isEmpty()) {
+        myCache.remove(moduleName);
+      }
+      unregisterDependencies(info);
+    }
+  }
+
+  private void registerDependencies(final BCInfo info) {
+    for (String path : info.myFileStates.keySet()) {
+      Collection<BCInfo> infos = myDependentBCs.get(path);
+      if (infos == null) {
+        infos = new ArrayList<>(1);
+        myDependentBCs.put(path, infos);
+      }
+      infos.add(info);
+    }
+  }
+
+  private void unregisterDependencies(final BCInfo info) {
+    for (String path : info.myFileStates.keySet()) {
+      final Collection<BCInfo> infos = myDependentBCs.get(path);
+      if (infos != null && infos.remove(info) && infos.isEmpty()) {
+        myDependentBCs.remove(path);
+      }
+    }
   }
 
   private static void addFileDependencies(final BCInfo bcInfo, final VirtualFile configFile, final String workDirPath) {
@@ -167,39 +359,261 @@ public class FlexCompilerDependenciesCache {
     catch (IOException e) {/*ignore*/}
   }
 
+  private int[] getStatistics(final Module module, final FlexBuildConfiguration bc) {
+    final String key = module.getName() + ": " + bc.getName();
+    int[] statistics = myStatistics.get(key);
+    if (statistics == null) {
+      statistics = new int[2];
+      myStatistics.put(key, statistics);
+    }
+    return statistics;
+  }
+
+  /**
+   * @return how many times each build configuration has been skipped as up-to-date and compiled since the project has been opened
+   */
+  public synchronized String getStatistics() {
+    final StringBuilder b = new StringBuilder("Flex compiler dependencies cache:");
+    for (Map.Entry<String, int[]> entry : myStatistics.entrySet()) {
+      b.append("\n  ").append(entry.getKey()).append(": ")
+        .append(entry.getValue()[0]).append(" skipped, ").append(entry.getValue()[1]).append(" compiled");
+    }
+    return b.toString();
+  }
+
+  /**
+   * @return dependencies of the loaded build configurations that are outside of the project content
+   */
+  private synchronized Collection<String> load() {
+    final Collection<String> watchedPaths = new THashSet<>();
+    if (myCacheFile == null || !myCacheFile.isFile()) return watchedPaths;
+
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)));
+      try {
+        if (in.readInt() != VERSION) return watchedPaths;
+
+        for (int moduleCount = in.readInt(); moduleCount > 0; moduleCount--) {
+          final String moduleName = IOUtil.readUTF(in);
+          final Collection<BCInfo> infosForModule = new ArrayList<>();
+          for (int bcCount = in.readInt(); bcCount > 0; bcCount--) {
+            final BCInfo info = BCInfo.read(in);
+            infosForModule.add(info);
+            registerDependencies(info);
+            watchedPaths.addAll(info.myWatchedPaths);
+          }
+          myCache.put(moduleName, infosForModule);
+        }
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to load " + myCacheFile.getPath() + ": " + e.getMessage());
+      clear();
+      watchedPaths.clear();
+    }
+    finally {
+      // if the IDE crashes, changes made in this session are not in the file, so the file must not be loaded once again
+      FileUtil.delete(myCacheFile);
+    }
+    return watchedPaths;
+  }
+
+  public synchronized void save() {
+    if (myCacheFile == null || myCache.isEmpty()) return;
+
+    try {
+      FileUtil.createParentDirs(myCacheFile);
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myCacheFile)));
+      try {
+        out.writeInt(VERSION);
+        out.writeInt(myCache.size());
+        for (Map.Entry<String, Collection<BCInfo>> entry : myCache.entrySet()) {
+          IOUtil.writeUTF(out, entry.getKey());
+          out.writeInt(entry.getValue().size());
+          for (BCInfo info : entry.getValue()) {
+            info.write(out);
+          }
+        }
+      }
+      finally {
+        out.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save " + myCacheFile.getPath() + ": " + e.getMessage());
+      FileUtil.delete(myCacheFile);
+    }
+  }
+
   private static class BCInfo {
-    private final FlexBuildConfiguration myBC;
+    private final String myBCState;
     private final String[] mySourceRootUrls;
-    private final Collection<Pair<File, Long>> myFileToTimestamp = new ArrayList<>();
+    private final long myOutputTimestamp;
+    // used while dependencies are collected, null for BCs loaded from disk
+    @Nullable private final ProjectFileIndex myFileIndex;
+    // canonical system-independent path -> state at the moment of compilation
+    private final Map<String, FileState> myFileStates = new THashMap<>();
+    // dependencies outside of the project content, VFS reports their changes only if they are watched
+    private final List<String> myWatchedPaths = new ArrayList<>();
+    // false if VFS can't report changes of some dependency, such BCs are not cached
+    private boolean myTrackedByVfs = true;
+    // dependencies that might have changed since the previous check, guarded by the cache
+    private final Set<String> myChangedPaths = new THashSet<>();
+    // set for BCs loaded from disk until their first check, guarded by the cache
+    private boolean myCheckSourceRoots;
 
-    private BCInfo(final FlexBuildConfiguration bc, final String[] sourceRootUrls) {
-      myBC = bc;
+    private BCInfo(final String bcState,
+                   final String[] sourceRootUrls,
+                   final long outputTimestamp,
+                   @Nullable final ProjectFileIndex fileIndex) {
+      myBCState = bcState;
       mySourceRootUrls = sourceRootUrls;
+      myOutputTimestamp = outputTimestamp;
+      myFileIndex = fileIndex;
     }
 
     private void addFileDependency(final String filePath, final String... potentialBaseDirs) {
       final File file = new File(FileUtil.toSystemDependentName(filePath));
       if (file.exists()) {
-        myFileToTimestamp.add(Pair.create(file, file.lastModified()));
+        addFileDependency(file);
       }
       else if (potentialBaseDirs != null) {
         for (String baseDir : potentialBaseDirs) {
           final File file1 = new File(FileUtil.toSystemDependentName(baseDir + '/' + filePath));
           if (file1.exists()) {
-            myFileToTimestamp.add(Pair.create(file1, file1.lastModified()));
+            addFileDependency(file1);
             break;
           }
         }
       }
     }
 
-    public boolean timestampsChanged() {
-      for (Pair<File, Long> fileAndTimestamp : myFileToTimestamp) {
-        if (fileAndTimestamp.first.lastModified() != fileAndTimestamp.second) {
+    private void addFileDependency(final File dependency) {
+      File file;
+      try {
+        // paths from config files may be relative, like 'baseDir/../libs/lib.swc', VFS events have canonical paths
+        file = dependency.getCanonicalFile();
+      }
+      catch (IOException e) {
+        file = dependency.getAbsoluteFile();
+      }
+
+      final String path = FileUtil.toSystemIndependentName(file.getPath());
+      if (myFileStates.containsKey(path)) return;
+
+      final long length = file.length();
+      myFileStates.put(path, new FileState(file.lastModified(), length, length <= MAX_HASHED_FILE_LENGTH ? computeHash(file) : null));
+
+      // VFS reports changes only at the path it knows a file by, and outside of the project content only if the file is watched
+      final VirtualFile vFile = LocalFileSystem.getInstance().findFileByPath(path);
+      if (vFile == null || !path.equals(vFile.getPath())) {
+        myTrackedByVfs = false;
+      }
+      else if (myFileIndex != null && !ReadAction.compute(() -> myFileIndex.isInContent(vFile))) {
+        myWatchedPaths.add(path);
+      }
+    }
+
+    private boolean dependenciesChanged(final Collection<String> changedPaths) {
+      for (String path : changedPaths) {
+        final FileState state = myFileStates.get(path);
+        if (state != null && !state.isUpToDate(new File(FileUtil.toSystemDependentName(path)))) {
           return true;
         }
       }
       return false;
     }
+
+    private void write(final DataOutput out) throws IOException {
+      IOUtil.writeUTF(out, myBCState);
+      out.writeLong(myOutputTimestamp);
+      out.writeInt(mySourceRootUrls.length);
+      for (String url : mySourceRootUrls) {
+        IOUtil.writeUTF(out, url);
+      }
+      out.writeInt(myFileStates.size());
+      for (Map.Entry<String, FileState> entry : myFileStates.entrySet()) {
+        IOUtil.writeUTF(out, entry.getKey());
+        entry.getValue().write(out);
+      }
+      out.writeInt(myWatchedPaths.size());
+      for (String path : myWatchedPaths) {
+        IOUtil.writeUTF(out, path);
+      }
+    }
+
+    private static BCInfo read(final DataInput in) throws IOException {
+      final String bcState = IOUtil.readUTF(in);
+      final long outputTimestamp = in.readLong();
+      final String[] sourceRootUrls = new String[in.readInt()];
+      for (int i = 0; i < sourceRootUrls.length; i++) {
+        sourceRootUrls[i] = IOUtil.readUTF(in);
+      }
+
+      final BCInfo info = new BCInfo(bcState, sourceRootUrls, outputTimestamp, null);
+      for (int fileCount = in.readInt(); fileCount > 0; fileCount--) {
+        info.myFileStates.put(IOUtil.readUTF(in), FileState.read(in));
+      }
+      for (int watchedCount = in.readInt(); watchedCount > 0; watchedCount--) {
+        final String path = IOUtil.readUTF(in);
+        if (!info.myFileStates.containsKey(path)) throw new IOException("Unknown dependency: " + path);
+        info.myWatchedPaths.add(path);
+      }
+      info.myChangedPaths.addAll(info.myFileStates.keySet());
+      info.myCheckSourceRoots = true;
+      return info;
+    }
+  }
+
+  private static class FileState {
+    private volatile long myTimestamp;
+    private final long myLength;
+    @Nullable private final String myHash;
+
+    private FileState(final long timestamp, final long length, @Nullable final String hash) {
+      myTimestamp = timestamp;
+      myLength = length;
+      myHash = hash;
+    }
+
+    private boolean isUpToDate(final File file) {
+      final long timestamp = file.lastModified();
+      if (timestamp == 0 || file.length() != myLength) return false;
+      if (timestamp == myTimestamp) return true;
+
+      if (myHash != null && myHash.equals(computeHash(file))) {
+        myTimestamp = timestamp; // not to compute the hash once again
+        return true;
+      }
+      return false;
+    }
+
+    private void write(final DataOutput out) throws IOException {
+      out.writeLong(myTimestamp);
+      out.writeLong(myLength);
+      out.writeBoolean(myHash != null);
+      if (myHash != null) {
+        IOUtil.writeUTF(out, myHash);
+      }
+    }
+
+    private static FileState read(final DataInput in) throws IOException {
+      final long timestamp = in.readLong();
+      final long length = in.readLong();
+      return new FileState(timestamp, length, in.readBoolean() ? IOUtil.readUTF(in) : null);
+    }
+  }
+
+  @Nullable
+  private static String computeHash(final File file) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(FileUtil.loadFileBytes(file)));
+    }
+    catch (IOException | NoSuchAlgorithmException e) {
+      return null;
+    }
   }
 }
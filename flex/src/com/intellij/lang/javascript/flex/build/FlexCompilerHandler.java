@@ -191,7 +191,7 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
       myBuiltInFlexCompilerHandler.stopCompilerProcess();
     }
     quitCompilerShell();
-    myCompilerDependenciesCache.clear();
+    myCompilerDependenciesCache.save();
     FlexCommonUtils.deleteTempFlexConfigFiles(myProject.getName());
     FlexCompilationUtils.deleteUnzippedANEFiles();
     myWidget.destroy();
@@ -713,6 +713,10 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
   private class MyVirtualFileListener implements VirtualFileListener {
     @Override
       public void propertyChanged(@NotNull final VirtualFilePropertyEvent event) {
+      final VirtualFile parent = event.getParent();
+      if (VirtualFile.PROP_NAME.equals(event.getPropertyName()) && parent != null) {
+        myCompilerDependenciesCache.markDependencyChanged(parent.getPath() + "/" + event.getOldValue(), event.getFile().isDirectory());
+      }
       handleVirtualFileEvent(event.getFile());
     }
 
@@ -733,6 +737,8 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
 
     @Override
       public void fileMoved(@NotNull final VirtualFileMoveEvent event) {
+      myCompilerDependenciesCache.markDependencyChanged(event.getOldParent().getPath() + "/" + event.getFileName(),
+                                                        event.getFile().isDirectory());
       handleVirtualFileEvent(event.getFile());
     }
 
@@ -747,7 +753,7 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
 
     private void handleVirtualFileEvent(final VirtualFile file, boolean contentsChanged) {
       if (file == null) return;
-      myCompilerDependenciesCache.markModuleDirtyIfInSourceRoot(file);
+      myCompilerDependenciesCache.fileChanged(file);
       //clearAutoGeneratedConfigsIfNeeded(file, contentsChanged);
     }
   }
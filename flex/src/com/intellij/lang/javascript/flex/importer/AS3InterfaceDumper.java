@@ -141,6 +141,10 @@ class AS3InterfaceDumper extends AbstractDumpProcessor {
     return false;
   }
 
+  public boolean doDumpMethodBodies() {
+    return false;
+  }
+
   public void setProcessingInterface(final boolean anInterface) {
     isInterface = anInterface;
   }
@@ -78,6 +78,10 @@ class AbcDumper extends AbstractDumpProcessor {
     return true;
   }
 
+  public boolean doDumpMethodBodies() {
+    return true;
+  }
+
   public void setProcessingInterface(final boolean anInterface) {
   }
 
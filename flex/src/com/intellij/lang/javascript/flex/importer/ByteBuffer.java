@@ -1,28 +1,39 @@
 package com.intellij.lang.javascript.flex.importer;
 
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.util.ArrayUtil;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
-import java.util.zip.InflaterInputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
+ * A view of a part of a byte array, positions are relative to the beginning of the part. Buffers filled by
+ * {@link #readBytes(ByteBuffer, int)} share the array with the source buffer, so tags and method bodies are never copied.
+ *
  * @author Maxim.Mossienko
 */
 class ByteBuffer {
+  // larger uncompressed length in SWF header is considered broken
+  private static final int MAX_COMPRESSION_RATIO = 1000;
+
   private byte[] bytes;
+  private int start;
+  private int end;
   private int position;
   private boolean littleEndian;
 
-  void read(@NotNull InputStream inputStream) throws IOException {
-    try {
-      bytes = readStream(inputStream);
-    }
-    finally {
-      if (inputStream != null) inputStream.close();
-    }
+  ByteBuffer() {
+    this(ArrayUtil.EMPTY_BYTE_ARRAY, 0, 0);
+  }
+
+  ByteBuffer(@NotNull final byte[] bytes, final int start, final int end) {
+    this.bytes = bytes;
+    this.start = start;
+    this.end = end;
   }
 
   void setLittleEndian() {
@@ -30,12 +41,15 @@ class ByteBuffer {
   }
 
   int readInt() {
+    checkRemaining(4);
     int result;
     if (littleEndian) {
-      result = (((bytes[position + 3] & 0xFF) << 8 | (bytes[position + 2] & 0xFF)) << 16) + ((bytes[position + 1] & 0xFF) << 8) | (bytes[position] & 0xFF);
+      final int i = start + position;
+      result = (((bytes[i + 3] & 0xFF) << 8 | (bytes[i + 2] & 0xFF)) << 16) + ((bytes[i + 1] & 0xFF) << 8) | (bytes[i] & 0xFF);
     }
     else {
-      result = (((bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF)) << 16) + ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+      final int i = start + position;
+      result = (((bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF)) << 16) + ((bytes[i + 2] & 0xFF) << 8) | (bytes[i + 3] & 0xFF);
     }
     position += 4;
     return result;
@@ -50,82 +64,90 @@ class ByteBuffer {
   }
 
   public int bytesSize() {
-    return bytes.length;
-  }
-
-  public void uncompress() throws IOException {
-    final InflaterInputStream zipInputStream = new InflaterInputStream(new ByteArrayInputStream(bytes));
-
-    bytes = readStream(zipInputStream);
-
-    zipInputStream.close();
+    return end - start;
   }
 
-  private static byte[] readStream(final InputStream zipInputStream) throws IOException {
-    final byte[] buf = new byte[8192];
-    byte[] result = new byte[8192];
-    int total = 0;
-
-    while (true) {
-      int read = zipInputStream.read(buf);
-      if (read == -1) break;
-      if (total + read >= result.length) {
-        byte[] newresult = new byte[result.length * 2];
-        System.arraycopy(result, 0, newresult, 0, total);
-        result = newresult;
+  /**
+   * Inflates the rest of this buffer in one pass directly into an array of {@code expectedLength} bytes, which is enlarged
+   * only if the expected length is wrong.
+   */
+  @NotNull
+  public ByteBuffer inflateRemaining(final int expectedLength) throws IOException {
+    final int compressedLength = end - start - position;
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes, start + position, compressedLength);
+      final long maxLength = (long)compressedLength * MAX_COMPRESSION_RATIO;
+      byte[] result = new byte[expectedLength > 0 && expectedLength <= maxLength ? expectedLength : Math.max(compressedLength * 4, 8192)];
+      int total = 0;
+      while (!inflater.finished()) {
+        if (total == result.length) {
+          result = Arrays.copyOf(result, result.length * 2);
+        }
+        final int inflated = inflater.inflate(result, total, result.length - total);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        total += inflated;
       }
 
-      System.arraycopy(buf, 0, result, total, read);
-      total += read;
+      position = end - start;
+      final ByteBuffer buffer = new ByteBuffer(result, 0, total);
+      buffer.littleEndian = littleEndian;
+      return buffer;
+    }
+    catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    finally {
+      inflater.end();
     }
-
-    final byte[] realResult = new byte[total];
-    System.arraycopy(result, 0, realResult, 0, total);
-    return realResult;
   }
 
   public int readUnsignedByte() {
-    return bytes[position++] & 0xFF;
+    checkRemaining(1);
+    return bytes[start + position++] & 0xFF;
   }
 
   public int readByte() {
-    return bytes[position++];
+    checkRemaining(1);
+    return bytes[start + position++];
   }
 
   public int readUnsignedShort() {
+    checkRemaining(2);
     int result;
     if (littleEndian) {
-      result = (bytes[position + 1] & 0xFF) << 8 | (bytes[position] & 0xFF);
+      result = (bytes[start + position + 1] & 0xFF) << 8 | (bytes[start + position] & 0xFF);
     }
     else {
-      result = (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+      result = (bytes[start + position] & 0xFF) << 8 | (bytes[start + position + 1] & 0xFF);
     }
     position += 2;
     return result;
   }
 
+  /**
+   * Makes {@code data2} a view of the next {@code length} bytes of this buffer, nothing is copied.
+   */
   public void readBytes(ByteBuffer data2, int length) {
-    data2.bytes = new byte[length];
-    System.arraycopy(bytes, position, data2.bytes, 0, length);
+    if (length < 0 || position + length > end - start) throw new ArrayIndexOutOfBoundsException(position + length);
+    data2.bytes = bytes;
+    data2.start = start + position;
+    data2.end = data2.start + length;
+    data2.position = 0;
     position += length;
   }
 
   public boolean eof() {
-    return position >= bytes.length;
+    return position >= end - start;
   }
 
   public String readUTFBytes(int i) {
-    try {
-      final byte[] buf = new byte[i];
-      while (i > 0) {
-        buf[buf.length - i] = (byte)readByte();
-        --i;
-      }
-      return new String(buf, "utf-8");
-    }
-    catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(e);
-    }
+    if (i < 0 || position + i > end - start) throw new ArrayIndexOutOfBoundsException(position + i);
+    final String result = new String(bytes, start + position, i, CharsetToolkit.UTF8_CHARSET);
+    position += i;
+    return result;
   }
 
   public double readDouble() {
@@ -147,7 +169,15 @@ class ByteBuffer {
   }
 
   public byte getByte(int i) {
-    return bytes[i];
+    if (i < 0 || i >= end - start) throw new ArrayIndexOutOfBoundsException(i);
+    return bytes[start + i];
+  }
+
+  /**
+   * The backing array is shared with other buffers, so reading past the end of this one must fail instead of returning their bytes.
+   */
+  private void checkRemaining(final int length) {
+    if (position < 0 || position + length > end - start) throw new ArrayIndexOutOfBoundsException(position + length);
   }
 
   public int getPosition() {
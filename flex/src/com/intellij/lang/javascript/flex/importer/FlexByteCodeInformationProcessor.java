@@ -31,6 +31,11 @@ interface FlexByteCodeInformationProcessor {
   boolean doStarTypeDumpInExtends();
   boolean doStarMetaAttrNameDump();
 
+  /**
+   * Method bodies take the biggest part of ABC but hold only code and activation traits, so they are skipped unless needed.
+   */
+  boolean doDumpMethodBodies();
+
   void setProcessingInterface(final boolean anInterface);
 
   String getParentName(final MemberInfo member);
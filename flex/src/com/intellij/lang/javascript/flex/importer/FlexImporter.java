@@ -70,9 +70,27 @@ public class FlexImporter {
     processFlexByteCode(in, new AS3InterfaceStubDumper(parent));
   }
 
+  /**
+   * Same as {@link #buildStubsInterfaceFromStream(InputStream, StubElement)} but works directly on the given bytes, which are not copied.
+   */
+  public static void buildStubsInterface(@NotNull final byte[] content, final StubElement parent) throws IOException {
+    processFlexByteCode(content, new AS3InterfaceStubDumper(parent));
+  }
+
   private static void processFlexByteCode(@NotNull final InputStream in, @NotNull FlexByteCodeInformationProcessor processor) throws IOException {
-    ByteBuffer data = new ByteBuffer();
-    data.read(in);
+    final byte[] content;
+    try {
+      content = FileUtil.loadBytes(in);
+    }
+    finally {
+      in.close();
+    }
+    processFlexByteCode(content, processor);
+  }
+
+  private static void processFlexByteCode(@NotNull final byte[] content, @NotNull FlexByteCodeInformationProcessor processor)
+    throws IOException {
+    ByteBuffer data = new ByteBuffer(content, 0, content.length);
     data.setLittleEndian();
     if (data.bytesSize() == 0) return;
     int version = data.readUnsignedInt();
@@ -83,14 +101,12 @@ public class FlexImporter {
     }
     else if ((version & SWF_MAGIC) == SWF_MAGIC) {
       final int delta = 8;
+      // file length in the header includes the uncompressed header itself
+      final int uncompressedLength = data.readUnsignedInt() - delta;
       data.setPosition(delta);
-      ByteBuffer udata = new ByteBuffer();
-      udata.setLittleEndian();
-      data.readBytes(udata, data.bytesSize() - delta);
-      int csize = udata.bytesSize();
-      udata.uncompress();
+      int csize = data.bytesSize() - delta;
+      ByteBuffer udata = data.inflateRemaining(uncompressedLength);
       processor.dumpStat("decompressed swf " + csize + " -> " + udata.bytesSize() + "\n");
-      udata.setPosition(0);
       new Swf(udata, processor);
     }
     else if ((version & SWF_MAGIC2) == SWF_MAGIC2) {
@@ -2,6 +2,10 @@ package com.intellij.lang.javascript.flex.importer;
 
 import org.jetbrains.annotations.NonNls;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
 /**
  * @author Maxim.Mossienko
  */
@@ -16,6 +20,13 @@ class Swf {
     }
   }
 
+  private static class AbcTag {
+    final ByteBuffer data = new ByteBuffer();
+    ForkJoinTask<Abc> task;
+  }
+
+  private static final int PARALLEL_PARSING_MIN_SIZE = 256 * 1024;
+
   private final FlexByteCodeInformationProcessor processor;
   private int bitPos;
   private int bitBuf;
@@ -162,6 +173,45 @@ class Swf {
   }
 
   private void decodeTags() {
+    // stats and ABC blocks in the order of tags, written out after all ABC blocks are parsed
+    final List<Runnable> output = new ArrayList<>();
+    final List<AbcTag> abcTags = new ArrayList<>();
+    RuntimeException scanError = null;
+
+    try {
+      scanTags(output, abcTags);
+    }
+    catch (RuntimeException e) {
+      // blocks before the damaged tag are still written out, as they used to be
+      scanError = e;
+    }
+
+    // Flex framework libraries have hundreds of ABC blocks which don't depend on each other
+    int abcSize = 0;
+    for (AbcTag abcTag : abcTags) {
+      abcSize += abcTag.data.bytesSize();
+    }
+    if (abcTags.size() > 1 && abcSize >= PARALLEL_PARSING_MIN_SIZE) {
+      for (AbcTag abcTag : abcTags) {
+        abcTag.task = ForkJoinTask.adapt(() -> new Abc(abcTag.data, processor)).fork();
+      }
+    }
+
+    try {
+      for (Runnable runnable : output) {
+        runnable.run();
+      }
+    }
+    finally {
+      for (AbcTag abcTag : abcTags) {
+        if (abcTag.task != null) abcTag.task.cancel(false);
+      }
+    }
+
+    if (scanError != null) throw scanError;
+  }
+
+  private void scanTags(final List<Runnable> output, final List<AbcTag> abcTags) {
     int type, h, length;
 
     while (data.getPosition() < data.bytesSize()) {
@@ -169,7 +219,7 @@ class Swf {
 
       if (((length = h & 0x3F) == 0x3F)) length = data.readInt();
 
-      processor.dumpStat(
+      dumpStat(output,
         (type < tagNames.length ? tagNames[type] : "undefined") + " " + length + "b " + ((int)100f * length / data.bytesSize()) + "%\n");
 
       switch (type) {
@@ -179,15 +229,20 @@ class Swf {
           int pos1 = data.getPosition();
           data.readInt();
           final String abcName = readString();
-          processor.dumpStat("\nabc name " + abcName + "\n");
+          dumpStat(output, "\nabc name " + abcName + "\n");
           length -= (data.getPosition() - pos1);
           // fall through
         case stagDoABC:
-          ByteBuffer data2 = new ByteBuffer();
-          data2.setLittleEndian();
-          data.readBytes(data2, length);
-          new Abc(data2, processor).dump(processor.getAbcInSwfIndent());
-          processor.append("\n");
+          final AbcTag abcTag = new AbcTag();
+          abcTag.data.setLittleEndian();
+          data.readBytes(abcTag.data, length);
+          abcTags.add(abcTag);
+          output.add(() -> {
+            final Abc abc = abcTag.task != null ? abcTag.task.join() : new Abc(abcTag.data, processor);
+            abcTag.task = null;
+            abc.dump(processor.getAbcInSwfIndent());
+            processor.append("\n");
+          });
           break;
         default:
           data.incPosition(length);
@@ -195,6 +250,10 @@ class Swf {
     }
   }
 
+  private void dumpStat(final List<Runnable> output, final @NonNls String stat) {
+    output.add(() -> processor.dumpStat(stat));
+  }
+
   private String readString() {
     String s = "";
     int c;
@@ -1,6 +1,8 @@
 package com.intellij.lang.javascript.flex.projectStructure.model.impl;
 
 import com.intellij.lang.javascript.flex.projectStructure.model.*;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.util.xmlb.XmlSerializer;
 import org.jetbrains.annotations.NotNull;
 
 public class Factory {
@@ -30,4 +32,13 @@ public class Factory {
     copy.setTempBCForCompilation(true);
     return copy;
   }
+
+  /**
+   * @return serialized settings of the build configuration, the same for {@link FlexBuildConfiguration#isEqual(FlexBuildConfiguration) equal}
+   * build configurations
+   */
+  @NotNull
+  public static String getSerializedState(@NotNull FlexBuildConfiguration bc) {
+    return JDOMUtil.writeElement(XmlSerializer.serialize(((FlexBuildConfigurationImpl)bc).getState(null)));
+  }
 }
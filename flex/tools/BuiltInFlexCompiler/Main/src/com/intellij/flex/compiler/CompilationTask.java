@@ -3,8 +3,11 @@ package com.intellij.flex.compiler;
 import flex2.compiler.ILocalizableMessage;
 import flex2.compiler.common.Configuration;
 
-public class CompilationThread extends Thread {
+import java.util.concurrent.atomic.AtomicInteger;
 
+public class CompilationTask implements Runnable {
+
+  private static final AtomicInteger runningCompilationsCount = new AtomicInteger();
   private static int omitTraceCompilationsCount = 0;
   private static int traceCompilationsCount = 0;
   private static final Object lock = new Object();
@@ -14,7 +17,7 @@ public class CompilationThread extends Thread {
   private final String[] myParams;
   private final OutputLogger myLogger;
 
-  public CompilationThread(final boolean isSwf,
+  public CompilationTask(final boolean isSwf,
                            final SdkSpecificHandler sdkSpecificHandler,
                            final String[] params,
                            final OutputLogger logger) {
@@ -34,6 +37,7 @@ public class CompilationThread extends Thread {
   }
 
   public void run() {
+    runningCompilationsCount.incrementAndGet();
     try {
       mySdkSpecificHandler.initThreadLocals(myLogger);
 
@@ -83,7 +87,10 @@ public class CompilationThread extends Thread {
     finally {
       myLogger.log(FlexCompiler.COMPILATION_FINISHED);
       mySdkSpecificHandler.cleanThreadLocals();
-      System.gc();
+      // full GC would stop other compilations
+      if (runningCompilationsCount.decrementAndGet() == 0) {
+        System.gc();
+      }
     }
   }
 
@@ -8,6 +8,10 @@ import flex2.tools.VersionInfo;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlexCompiler implements MessageSender {
 
@@ -21,9 +25,50 @@ public class FlexCompiler implements MessageSender {
   public static String SDK_MINOR_VERSION = VersionInfo.FLEX_MINOR_VERSION;
   public static String SDK_REVISION_VERSION = VersionInfo.FLEX_NANO_VERSION;
 
+  // compilations beyond this number wait in the queue instead of competing for CPU and memory
+  private static final int MAX_PARALLEL_COMPILATIONS =
+    Integer.getInteger("idea.flex.compiler.max.parallel.compilations", Runtime.getRuntime().availableProcessors());
+
   private DataInputStream myDataInputStream;
   private DataOutputStream myDataOutputStream;
 
+  private final ExecutorService myExecutor = createExecutor();
+  private final Map<String, Compilation> myCompilations = new ConcurrentHashMap<String, Compilation>();
+
+  private class Compilation extends FutureTask<Object> {
+    private final String myCommandNumber;
+    private final OutputLogger myLogger;
+
+    private Compilation(final String commandNumber, final CompilationTask task, final OutputLogger logger) {
+      super(task, null);
+      myCommandNumber = commandNumber;
+      myLogger = logger;
+    }
+
+    private void cancel() {
+      // a compilation that has already started can't be interrupted safely, it just stops reporting
+      myLogger.cancel();
+      cancel(false);
+    }
+
+    protected void done() {
+      myCompilations.remove(myCommandNumber);
+    }
+  }
+
+  private static ExecutorService createExecutor() {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    final int threads = Math.max(1, MAX_PARALLEL_COMPILATIONS);
+    return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "Flex compilation " + threadNumber.incrementAndGet());
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
   private void openSocket(int port) throws IOException {
     final int maxAttempts = 10;
     Socket socket;
@@ -104,14 +149,14 @@ public class FlexCompiler implements MessageSender {
         exit();
         return true;
       } else {
-        startCompilationThread(command);
+        startCompilation(command);
       }
     }
 
     return false;
   }
 
-  private void startCompilationThread(final String command) {
+  private void startCompilation(final String command) {
     final int colonPos = command.indexOf(":");
     if (colonPos <= 0) {
       sendMessage("Error: Incorrect command: [" + command + "]");
@@ -149,11 +194,10 @@ public class FlexCompiler implements MessageSender {
       return;
     }
 
-    final CompilationThread compilationThread =
-      new CompilationThread(isSwf, sdkSpecificHandler, getParams(compilationCommand), logger);
-    compilationThread.setPriority(Thread.MAX_PRIORITY);
-    compilationThread.setDaemon(true);
-    compilationThread.start();
+    final Compilation compilation =
+      new Compilation(commandNumberStr, new CompilationTask(isSwf, sdkSpecificHandler, getParams(compilationCommand), logger), logger);
+    myCompilations.put(commandNumberStr, compilation);
+    myExecutor.execute(compilation);
   }
 
   private SdkSpecificHandler getSdkSpecificHandler() {
@@ -189,6 +233,8 @@ public class FlexCompiler implements MessageSender {
   }
 
   private void cancelAllCompilations() {
-    // todo implement
+    for (Compilation compilation : new ArrayList<Compilation>(myCompilations.values())) {
+      compilation.cancel();
+    }
   }
 }